@@ -17,6 +17,7 @@ package org.apache.ibatis.binding;
 
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.reflection.MetaObject;
@@ -64,6 +65,8 @@ public class MapperMethod {
         result = executeForMany(sqlSession, args);
       } else if (method.returnsMap()) {
         result = executeForMap(sqlSession, args);
+      } else if (method.returnsCursor()) {
+        result = executeForCursor(sqlSession, args);
       } else {
         Object param = method.convertArgsToSqlCommandParam(args);
         result = sqlSession.selectOne(command.getName(), param);
@@ -130,6 +133,18 @@ public class MapperMethod {
     return result;
   }
 
+  private <T> Cursor<T> executeForCursor(SqlSession sqlSession, Object[] args) {
+    Cursor<T> result;
+    Object param = method.convertArgsToSqlCommandParam(args);
+    if (method.hasRowBounds()) {
+      RowBounds rowBounds = method.extractRowBounds(args);
+      result = sqlSession.<T>selectCursor(command.getName(), param, rowBounds);
+    } else {
+      result = sqlSession.<T>selectCursor(command.getName(), param);
+    }
+    return result;
+  }
+
   private <E> Object convertToDeclaredCollection(Configuration config, List<E> list) {
     Object collection = config.getObjectFactory().create(method.getReturnType());
     MetaObject metaObject = config.newMetaObject(collection);
@@ -160,6 +175,17 @@ public class MapperMethod {
 
     private static final long serialVersionUID = -2212268410512043556L;
 
+    public ParamMap() {
+      super();
+    }
+
+    /**
+     * @param size key的个数,HashMap按这个大小分配,不需要扩容
+     */
+    public ParamMap(int size) {
+      super(Math.max((int) (size / .75f) + 1, 16));
+    }
+
     @Override
     public V get(Object key) {
       if (!super.containsKey(key)) {
@@ -210,23 +236,35 @@ public class MapperMethod {
     private final boolean returnsMany;
     private final boolean returnsMap;
     private final boolean returnsVoid;
+    private final boolean returnsCursor;
     private final Class<?> returnType;
     private final String mapKey;
     private final Integer resultHandlerIndex;
     private final Integer rowBoundsIndex;
     private final SortedMap<Integer, String> params;
     private final boolean hasNamedParameters;
+    //ParamMap里的key(参数名和param1,param2...)以及每个key对应的args下标,构造时算好
+    private final String[] paramMapKeys;
+    private final int[] paramMapSlots;
 
     public MethodSignature(Configuration configuration, Method method) throws BindingException {
       this.returnType = method.getReturnType();
       this.returnsVoid = void.class.equals(this.returnType);
       this.returnsMany = (configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray());
+      this.returnsCursor = Cursor.class.equals(this.returnType);
       this.mapKey = getMapKey(method);
       this.returnsMap = (this.mapKey != null);
       this.hasNamedParameters = hasNamedParams(method);
       this.rowBoundsIndex = getUniqueParamIndex(method, RowBounds.class);
       this.resultHandlerIndex = getUniqueParamIndex(method, ResultHandler.class);
       this.params = Collections.unmodifiableSortedMap(getParams(method, this.hasNamedParameters));
+      final Map<String, Integer> slots = getParamMapSlots(this.params);
+      this.paramMapKeys = slots.keySet().toArray(new String[slots.size()]);
+      this.paramMapSlots = new int[slots.size()];
+      int i = 0;
+      for (Integer slot : slots.values()) {
+        this.paramMapSlots[i++] = slot;
+      }
     }
 
     public Object convertArgsToSqlCommandParam(Object[] args) {
@@ -236,16 +274,9 @@ public class MapperMethod {
       } else if (!hasNamedParameters && paramCount == 1) {
         return args[params.keySet().iterator().next()];
       } else {
-        final Map<String, Object> param = new ParamMap<Object>();
-        int i = 0;
-        for (Map.Entry<Integer, String> entry : params.entrySet()) {
-          param.put(entry.getValue(), args[entry.getKey()]);
-          // issue #71, add param names as param1, param2...but ensure backward compatibility
-          final String genericParamName = "param" + String.valueOf(i + 1);
-          if (!param.containsKey(genericParamName)) {
-            param.put(genericParamName, args[entry.getKey()]);
-          }
-          i++;
+        final Map<String, Object> param = new ParamMap<Object>(paramMapKeys.length);
+        for (int i = 0; i < paramMapKeys.length; i++) {
+          param.put(paramMapKeys[i], args[paramMapSlots[i]]);
         }
         return param;
       }
@@ -287,6 +318,10 @@ public class MapperMethod {
       return returnsVoid;
     }
 
+    public boolean returnsCursor() {
+      return returnsCursor;
+    }
+
     private Integer getUniqueParamIndex(Method method, Class<?> paramType) {
       Integer index = null;
       final Class<?>[] argTypes = method.getParameterTypes();
@@ -313,6 +348,24 @@ public class MapperMethod {
       return mapKey;
     }
 
+    /**
+     * ParamMap的key -> args下标
+     */
+    private static Map<String, Integer> getParamMapSlots(SortedMap<Integer, String> params) {
+      final Map<String, Integer> slots = new LinkedHashMap<String, Integer>();
+      int i = 0;
+      for (Map.Entry<Integer, String> entry : params.entrySet()) {
+        slots.put(entry.getValue(), entry.getKey());
+        // issue #71, add param names as param1, param2...but ensure backward compatibility
+        final String genericParamName = "param" + String.valueOf(i + 1);
+        if (!slots.containsKey(genericParamName)) {
+          slots.put(genericParamName, entry.getKey());
+        }
+        i++;
+      }
+      return slots;
+    }
+
     private SortedMap<Integer, String> getParams(Method method, boolean hasNamedParameters) {
       final SortedMap<Integer, String> params = new TreeMap<Integer, String>();
       final Class<?>[] argTypes = method.getParameterTypes();
@@ -260,9 +260,14 @@ public class MapperBuilderAssistant extends BaseBuilder {
       String keyColumn,
       String databaseId,
       LanguageDriver lang,
-      String resultSets) {
+      String resultSets,
+      String batchSelect,
+      String batchKeyProperty) {
     
     if (unresolvedCacheRef) throw new IncompleteElementException("Cache-ref not yet resolved");
+    if (batchSelect != null && batchKeyProperty == null) {
+      throw new BuilderException("Statement " + id + " declares batchSelect but no batchKeyProperty.");
+    }
     
     id = applyCurrentNamespace(id, false);
     boolean isSelect = sqlCommandType == SqlCommandType.SELECT;
@@ -278,6 +283,8 @@ public class MapperBuilderAssistant extends BaseBuilder {
     statementBuilder.lang(lang);
     statementBuilder.resultOrdered(resultOrdered);
     statementBuilder.resulSets(resultSets);
+    statementBuilder.batchSelect(applyCurrentNamespace(batchSelect, true));
+    statementBuilder.batchKeyProperty(batchKeyProperty);
     setStatementTimeout(timeout, statementBuilder);
 
     setStatementParameterMap(parameterMap, parameterType, statementBuilder);
@@ -490,6 +497,35 @@ public class MapperBuilderAssistant extends BaseBuilder {
     return configuration.getLanguageRegistry().getDriver(langClass);
   }
 
+  /** Backward compatibility signature */
+  public MappedStatement addMappedStatement(
+    String id,
+    SqlSource sqlSource,
+    StatementType statementType,
+    SqlCommandType sqlCommandType,
+    Integer fetchSize,
+    Integer timeout,
+    String parameterMap,
+    Class<?> parameterType,
+    String resultMap,
+    Class<?> resultType,
+    ResultSetType resultSetType,
+    boolean flushCache,
+    boolean useCache,
+    boolean resultOrdered,
+    KeyGenerator keyGenerator,
+    String keyProperty,
+    String keyColumn,
+    String databaseId,
+    LanguageDriver lang,
+    String resultSets) {
+    return addMappedStatement(
+      id, sqlSource, statementType, sqlCommandType, fetchSize, timeout, 
+      parameterMap, parameterType, resultMap, resultType, resultSetType, 
+      flushCache, useCache, resultOrdered, keyGenerator, keyProperty, 
+      keyColumn, databaseId, lang, resultSets, null, null);
+  }
+
   /** Backward compatibility signature */
   public MappedStatement addMappedStatement(
     String id,
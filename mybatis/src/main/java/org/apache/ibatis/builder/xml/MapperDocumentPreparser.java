@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.InputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 
+ * mapperParseThreads大于1时,XMLConfigBuilder先把所有<mapper resource|url>的xml交给线程池解析成DOM,
+ * 然后仍然按<mappers>里的顺序在当前线程注册到Configuration,所以注册顺序、StrictMap里的内容和报错的位置都和顺序解析一样
+ * 
+ * 解析失败的异常在轮到这个mapper注册时才抛出,前面的mapper已经注册完
+ * 
+ */
+class MapperDocumentPreparser {
+
+  private final Configuration configuration;
+  private final MapperSnapshot snapshot;
+  private final ExecutorService executor;
+  private final Map<XNode, Future<XPathParser>> documents = new IdentityHashMap<XNode, Future<XPathParser>>();
+
+  MapperDocumentPreparser(Configuration configuration, MapperSnapshot snapshot, int threads) {
+    this.configuration = configuration;
+    this.snapshot = snapshot;
+    this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "mybatis-mapper-parser-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @param mapperNode  <mapper>节点
+   * @param location    resource或url
+   * @param inputStream 在当前线程打开,保证和顺序解析用同一个类加载器找资源
+   */
+  void submit(XNode mapperNode, final String location, final InputStream inputStream) {
+    documents.put(mapperNode, executor.submit(new Callable<XPathParser>() {
+      public XPathParser call() {
+        return MapperSnapshot.newParser(snapshot, configuration, location, inputStream);
+      }
+    }));
+  }
+
+  /**
+   * @return 没有提交过这个节点时返回null,由调用方按原来的方式解析
+   */
+  XPathParser take(XNode mapperNode) {
+    Future<XPathParser> document = documents.remove(mapperNode);
+    if (document == null) {
+      return null;
+    }
+    try {
+      return document.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BuilderException("Interrupted while parsing mapper XML.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new BuilderException("Error parsing mapper XML. Cause: " + cause, cause);
+    }
+  }
+
+  void close() {
+    for (Future<XPathParser> document : documents.values()) {
+      document.cancel(true);
+    }
+    documents.clear();
+    executor.shutdownNow();
+  }
+
+}
@@ -0,0 +1,323 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * 
+ * mapper xml的二进制快照,构建时生成,启动时代替xml解析和DTD校验
+ * 
+ * 每个mapper记录位置(resource或url)、xml内容的CRC32和长度,以及校验后的DOM树(元素、属性、文本、CDATA);
+ * 启动时xml内容和快照里的校验和一致才直接用快照重建DOM,否则(或者快照损坏时)照常解析xml
+ * 
+ * 生成快照:
+ *   java org.apache.ibatis.builder.xml.MapperSnapshot mybatis-config.xml mapper.snapshot
+ * 使用快照:
+ *   &lt;setting name="mapperSnapshotFile" value="mapper.snapshot"/&gt;  (文件路径或classpath资源)
+ * 
+ */
+public final class MapperSnapshot {
+
+  private static final int MAGIC = 0x4D425353; // MBSS
+  private static final int VERSION = 1;
+
+  private static final byte ELEMENT = 1;
+  private static final byte TEXT = 2;
+  private static final byte CDATA = 3;
+
+  private final Map<String, Entry> entries;
+
+  private MapperSnapshot(Map<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * 读取快照,依次尝试文件路径和classpath资源,不存在或者格式不对时返回null
+   * @param location
+   * @return
+   */
+  public static MapperSnapshot load(String location) {
+    try {
+      File file = new File(location);
+      InputStream inputStream = file.isFile() ? new FileInputStream(file) : Resources.getResourceAsStream(location);
+      try {
+        return read(inputStream);
+      } finally {
+        inputStream.close();
+      }
+    } catch (IOException e) {
+      return null; // fall back to parsing the mapper files
+    }
+  }
+
+  public static MapperSnapshot read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException("Not a mapper snapshot");
+    }
+    int count = in.readInt();
+    Map<String, Entry> entries = new HashMap<String, Entry>();
+    for (int i = 0; i < count; i++) {
+      String location = readString(in);
+      long checksum = in.readLong();
+      int sourceLength = in.readInt();
+      byte[] tree = new byte[in.readInt()];
+      in.readFully(tree);
+      entries.put(location, new Entry(checksum, sourceLength, tree));
+    }
+    return new MapperSnapshot(entries);
+  }
+
+  /**
+   * 解析每个mapper xml(带DTD校验)并写出快照
+   * @param sources 位置 -> xml内容
+   * @param outputStream
+   * @throws IOException
+   */
+  public static void write(Map<String, byte[]> sources, OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(sources.size());
+    for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+      XPathParser parser = new XPathParser(new ByteArrayInputStream(source.getValue()), true, null, new XMLMapperEntityResolver());
+      Document document = parser.evalNode("/mapper").getNode().getOwnerDocument();
+      ByteArrayOutputStream tree = new ByteArrayOutputStream();
+      DataOutputStream treeOut = new DataOutputStream(tree);
+      writeNode(treeOut, document.getDocumentElement());
+      treeOut.flush();
+      writeString(out, source.getKey());
+      out.writeLong(checksum(source.getValue()));
+      out.writeInt(source.getValue().length);
+      out.writeInt(tree.size());
+      tree.writeTo(out);
+    }
+    out.flush();
+  }
+
+  /**
+   * 读取mapper xml并生成XPathParser,快照里有这个位置并且内容没变时用快照里的DOM,
+   * 否则按useStreamingMapperParser用SAX流式读取或者DocumentBuilder解析
+   * @param snapshot 可以为null
+   */
+  static XPathParser newParser(MapperSnapshot snapshot, Configuration configuration, String location, InputStream inputStream) {
+    InputStream source = inputStream;
+    if (snapshot != null) {
+      byte[] bytes;
+      try {
+        bytes = readFully(inputStream);
+      } catch (IOException e) {
+        throw new BuilderException("Error reading mapper " + location + ".  Cause: " + e, e);
+      }
+      Document document = snapshot.getDocument(location, bytes);
+      if (document != null) {
+        return new XPathParser(document, true, configuration.getVariables(), new XMLMapperEntityResolver());
+      }
+      source = new ByteArrayInputStream(bytes);
+    }
+    if (configuration.isUseStreamingMapperParser()) {
+      return new XPathParser(StreamingMapperReader.read(source), true, configuration.getVariables(), new XMLMapperEntityResolver());
+    }
+    return new XPathParser(source, true, configuration.getVariables(), new XMLMapperEntityResolver());
+  }
+
+  /**
+   * @return 没有这个位置、xml已经改过或者快照损坏时返回null
+   */
+  public Document getDocument(String location, byte[] source) {
+    Entry entry = entries.get(location);
+    if (entry == null || entry.sourceLength != source.length || entry.checksum != checksum(source)) {
+      return null;
+    }
+    try {
+      Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.tree));
+      document.appendChild(readNode(in, document));
+      return document;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  public boolean contains(String location) {
+    return entries.containsKey(location);
+  }
+
+  /**
+   * 构建时使用:args[0]为mybatis配置文件(文件路径或classpath资源),args[1]为输出的快照文件
+   * 只处理&lt;mappers&gt;里的&lt;mapper resource|url&gt;
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: MapperSnapshot <mybatis-config.xml> <snapshot file>");
+    }
+    Map<String, byte[]> sources = new LinkedHashMap<String, byte[]>();
+    XPathParser config = new XPathParser(openLocation(args[0]), true, null, new XMLMapperEntityResolver());
+    for (XNode mapper : config.evalNodes("/configuration/mappers/mapper")) {
+      String resource = mapper.getStringAttribute("resource");
+      String url = mapper.getStringAttribute("url");
+      if (resource != null && url == null && resource.indexOf("${") < 0) {
+        sources.put(resource, readFully(Resources.getResourceAsStream(resource)));
+      } else if (resource == null && url != null && url.indexOf("${") < 0) {
+        sources.put(url, readFully(Resources.getUrlAsStream(url)));
+      }
+    }
+    OutputStream out = new FileOutputStream(args[1]);
+    try {
+      write(sources, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static InputStream openLocation(String location) throws IOException {
+    File file = new File(location);
+    return file.isFile() ? new FileInputStream(file) : Resources.getResourceAsStream(location);
+  }
+
+  private static void writeNode(DataOutputStream out, Node node) throws IOException {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      out.writeByte(ELEMENT);
+      writeString(out, node.getNodeName());
+      NamedNodeMap attributes = node.getAttributes();
+      out.writeInt(attributes.getLength());
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Attr attribute = (Attr) attributes.item(i);
+        writeString(out, attribute.getName());
+        writeString(out, attribute.getValue());
+      }
+      NodeList children = node.getChildNodes();
+      int count = 0;
+      for (int i = 0; i < children.getLength(); i++) {
+        if (isSnapshotNode(children.item(i))) {
+          count++;
+        }
+      }
+      out.writeInt(count);
+      for (int i = 0; i < children.getLength(); i++) {
+        if (isSnapshotNode(children.item(i))) {
+          writeNode(out, children.item(i));
+        }
+      }
+    } else {
+      out.writeByte(node.getNodeType() == Node.CDATA_SECTION_NODE ? CDATA : TEXT);
+      writeString(out, node.getNodeValue());
+    }
+  }
+
+  /**
+   * 注释在解析时已经忽略,这里只保留元素、文本和CDATA
+   */
+  private static boolean isSnapshotNode(Node node) {
+    short type = node.getNodeType();
+    return type == Node.ELEMENT_NODE || type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE;
+  }
+
+  private static Node readNode(DataInputStream in, Document document) throws IOException {
+    byte type = in.readByte();
+    if (type == ELEMENT) {
+      Element element = document.createElement(readString(in));
+      int attributes = in.readInt();
+      for (int i = 0; i < attributes; i++) {
+        element.setAttribute(readString(in), readString(in));
+      }
+      int children = in.readInt();
+      for (int i = 0; i < children; i++) {
+        element.appendChild(readNode(in, document));
+      }
+      return element;
+    } else if (type == CDATA) {
+      return document.createCDATASection(readString(in));
+    } else if (type == TEXT) {
+      return document.createTextNode(readString(in));
+    }
+    throw new IOException("Corrupt mapper snapshot");
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static long checksum(byte[] source) {
+    CRC32 crc = new CRC32();
+    crc.update(source);
+    return crc.getValue();
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int n; (n = inputStream.read(buffer)) > 0;) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private static final class Entry {
+    private final long checksum;
+    private final int sourceLength;
+    private final byte[] tree;
+
+    private Entry(long checksum, int sourceLength, byte[] tree) {
+      this.checksum = checksum;
+      this.sourceLength = sourceLength;
+      this.tree = tree;
+    }
+  }
+
+}
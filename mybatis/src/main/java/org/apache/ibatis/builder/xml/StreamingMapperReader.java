@@ -0,0 +1,173 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * 
+ * 用不校验的SAX解析器单遍流式读取mapper xml,直接生成XMLMapperBuilder用的DOM
+ * 
+ * 和XPathParser的DocumentBuilder相比不做DTD校验,只保留元素、属性、文本和CDATA(注释和处理指令丢弃),
+ * 相邻的文本合并成一个节点,和DocumentBuilder(coalescing=false)的结果一致;
+ * DTD只用来展开实体和补上属性默认值,通过XMLMapperEntityResolver从classpath读取
+ * 
+ * 开启:&lt;setting name="useStreamingMapperParser" value="true"/&gt;
+ * 
+ */
+final class StreamingMapperReader {
+
+  private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+  private StreamingMapperReader() {
+  }
+
+  static Document read(InputStream inputStream) {
+    try {
+      Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      DomBuilder builder = new DomBuilder(document);
+      //SAXParserFactory不保证线程安全,并行解析mapper时每次新建
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(false);
+      factory.setValidating(false);
+      XMLReader reader = factory.newSAXParser().getXMLReader();
+      reader.setContentHandler(builder);
+      reader.setEntityResolver(builder);
+      reader.setErrorHandler(builder);
+      reader.setProperty(LEXICAL_HANDLER, builder);
+      reader.parse(new InputSource(inputStream));
+      return document;
+    } catch (Exception e) {
+      throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+    }
+  }
+
+  private static class DomBuilder extends DefaultHandler implements LexicalHandler {
+
+    private final Document document;
+    private Node current;
+    //CDATA段里的字符可能分几次回调,都追加到同一个节点
+    private CharacterData cdata;
+    private boolean inCdata;
+
+    private DomBuilder(Document document) {
+      this.document = document;
+      this.current = document;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+      Element element = document.createElement(qName);
+      for (int i = 0, n = attributes.getLength(); i < n; i++) {
+        element.setAttribute(attributes.getQName(i), attributes.getValue(i));
+      }
+      current.appendChild(element);
+      current = element;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+      current = current.getParentNode();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      if (current == document) {
+        return;
+      }
+      if (inCdata) {
+        if (cdata == null) {
+          cdata = document.createCDATASection("");
+          current.appendChild(cdata);
+        }
+        cdata.appendData(new String(ch, start, length));
+        return;
+      }
+      Node last = current.getLastChild();
+      if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+        ((Text) last).appendData(new String(ch, start, length));
+      } else {
+        current.appendChild(document.createTextNode(new String(ch, start, length)));
+      }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+      characters(ch, start, length);
+    }
+
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) throws SAXException {
+      InputSource source = new XMLMapperEntityResolver().resolveEntity(publicId, systemId);
+      //不认识的DTD不去网络上读取
+      return source != null ? source : new InputSource(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @Override
+    public void error(SAXParseException e) throws SAXException {
+      throw e;
+    }
+
+    public void startCDATA() {
+      inCdata = true;
+      cdata = null;
+    }
+
+    public void endCDATA() {
+      //空的CDATA段也保留一个节点
+      if (cdata == null) {
+        current.appendChild(document.createCDATASection(""));
+      }
+      inCdata = false;
+      cdata = null;
+    }
+
+    public void startDTD(String name, String publicId, String systemId) {
+    }
+
+    public void endDTD() {
+    }
+
+    public void startEntity(String name) {
+    }
+
+    public void endEntity(String name) {
+    }
+
+    public void comment(char[] ch, int start, int length) {
+      // comments are not part of the mapper
+    }
+  }
+
+}
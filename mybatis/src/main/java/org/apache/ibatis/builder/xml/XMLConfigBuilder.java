@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.builder.xml;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.Properties;
@@ -26,6 +27,7 @@ import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.datasource.DataSourceFactory;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.loader.ProxyFactory;
+import org.apache.ibatis.executor.pagination.PaginationDialect;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.DatabaseIdProvider;
 import org.apache.ibatis.mapping.Environment;
@@ -105,6 +107,9 @@ public class XMLConfigBuilder extends BaseBuilder {
       databaseIdProviderElement(root.evalNode("databaseIdProvider"));
       typeHandlerElement(root.evalNode("typeHandlers"));
       mapperElement(root.evalNode("mappers"));
+      if (configuration.getReflectorPreloadThreads() > 0) {
+        configuration.preloadReflectors();
+      }
     } catch (Exception e) {
       throw new BuilderException("Error parsing SQL Mapper Configuration. Cause: " + e, e);
     }
@@ -206,6 +211,26 @@ public class XMLConfigBuilder extends BaseBuilder {
       configuration.setUseGeneratedKeys(booleanValueOf(props.getProperty("useGeneratedKeys"), false));
       configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
       configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
+      configuration.setDefaultFetchSize(integerValueOf(props.getProperty("defaultFetchSize"), null));
+      configuration.setAdaptiveFetchSizeEnabled(booleanValueOf(props.getProperty("adaptiveFetchSizeEnabled"), false));
+      configuration.setAdaptiveFetchSizeLimit(integerValueOf(props.getProperty("adaptiveFetchSizeLimit"), 1000));
+      configuration.setPushDownRowBounds(booleanValueOf(props.getProperty("pushDownRowBounds"), false));
+      configuration.setPaginationDialect((PaginationDialect) createInstance(props.getProperty("paginationDialect")));
+      configuration.setParallelResultSetMappingEnabled(booleanValueOf(props.getProperty("parallelResultSetMappingEnabled"), false));
+      configuration.setParallelResultSetMappingThreads(integerValueOf(props.getProperty("parallelResultSetMappingThreads"), Runtime.getRuntime().availableProcessors()));
+      configuration.setNestedSelectBatchSize(integerValueOf(props.getProperty("nestedSelectBatchSize"), 100));
+      configuration.setLazyLoadPoolMaximumSessions(integerValueOf(props.getProperty("lazyLoadPoolMaximumSessions"), 0));
+      configuration.setLazyLoadPoolIdleTimeout(integerValueOf(props.getProperty("lazyLoadPoolIdleTimeout"), 1000));
+      configuration.setBatchGroupStatements(booleanValueOf(props.getProperty("batchGroupStatements"), false));
+      configuration.setBatchFlushSize(integerValueOf(props.getProperty("batchFlushSize"), 0));
+      configuration.setBatchRewriteInserts(booleanValueOf(props.getProperty("batchRewriteInserts"), false));
+      configuration.setBatchRewriteMaxParameters(integerValueOf(props.getProperty("batchRewriteMaxParameters"), 2000));
+      configuration.setBulkLoadBatchSize(integerValueOf(props.getProperty("bulkLoadBatchSize"), 1000));
+      configuration.setReflectorPreloadThreads(integerValueOf(props.getProperty("reflectorPreloadThreads"), 0));
+      configuration.setReflectorSnapshotFile(props.getProperty("reflectorSnapshotFile"));
+      configuration.setMapperParseThreads(integerValueOf(props.getProperty("mapperParseThreads"), 0));
+      configuration.setMapperSnapshotFile(props.getProperty("mapperSnapshotFile"));
+      configuration.setUseStreamingMapperParser(booleanValueOf(props.getProperty("useStreamingMapperParser"), false));
       configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
       configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));
       configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
@@ -307,35 +332,77 @@ public class XMLConfigBuilder extends BaseBuilder {
 
   private void mapperElement(XNode parent) throws Exception {
     if (parent != null) {
-      for (XNode child : parent.getChildren()) {
-        if ("package".equals(child.getName())) {
-          String mapperPackage = child.getStringAttribute("name");
-          configuration.addMappers(mapperPackage);
-        } else {
-          String resource = child.getStringAttribute("resource");
-          String url = child.getStringAttribute("url");
-          String mapperClass = child.getStringAttribute("class");
-          if (resource != null && url == null && mapperClass == null) {
-            ErrorContext.instance().resource(resource);
-            InputStream inputStream = Resources.getResourceAsStream(resource);
-            XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
-            mapperParser.parse();
-          } else if (resource == null && url != null && mapperClass == null) {
-            ErrorContext.instance().resource(url);
-            InputStream inputStream = Resources.getUrlAsStream(url);
-            XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, url, configuration.getSqlFragments());
-            mapperParser.parse();
-          } else if (resource == null && url == null && mapperClass != null) {
-            Class<?> mapperInterface = Resources.classForName(mapperClass);
-            configuration.addMapper(mapperInterface);
+      //设置了mapperSnapshotFile时,内容没变的mapper直接用快照里的DOM
+      final MapperSnapshot snapshot = configuration.getMapperSnapshotFile() == null ? null : MapperSnapshot.load(configuration.getMapperSnapshotFile());
+      //mapperParseThreads大于1时先并行解析所有mapper xml,下面按顺序注册
+      final MapperDocumentPreparser preparser = configuration.getMapperParseThreads() > 1 ? preparseMappers(parent, snapshot) : null;
+      try {
+        for (XNode child : parent.getChildren()) {
+          if ("package".equals(child.getName())) {
+            String mapperPackage = child.getStringAttribute("name");
+            configuration.addMappers(mapperPackage);
           } else {
-            throw new BuilderException("A mapper element may only specify a url, resource or class, but not more than one.");
+            String resource = child.getStringAttribute("resource");
+            String url = child.getStringAttribute("url");
+            String mapperClass = child.getStringAttribute("class");
+            if (resource != null && url == null && mapperClass == null) {
+              ErrorContext.instance().resource(resource);
+              XPathParser document = preparser == null ? null : preparser.take(child);
+              if (document == null) {
+                document = MapperSnapshot.newParser(snapshot, configuration, resource, Resources.getResourceAsStream(resource));
+              }
+              XMLMapperBuilder mapperParser = new XMLMapperBuilder(document, configuration, resource, configuration.getSqlFragments());
+              mapperParser.parse();
+            } else if (resource == null && url != null && mapperClass == null) {
+              ErrorContext.instance().resource(url);
+              XPathParser document = preparser == null ? null : preparser.take(child);
+              if (document == null) {
+                document = MapperSnapshot.newParser(snapshot, configuration, url, Resources.getUrlAsStream(url));
+              }
+              XMLMapperBuilder mapperParser = new XMLMapperBuilder(document, configuration, url, configuration.getSqlFragments());
+              mapperParser.parse();
+            } else if (resource == null && url == null && mapperClass != null) {
+              Class<?> mapperInterface = Resources.classForName(mapperClass);
+              configuration.addMapper(mapperInterface);
+            } else {
+              throw new BuilderException("A mapper element may only specify a url, resource or class, but not more than one.");
+            }
           }
         }
+      } finally {
+        if (preparser != null) {
+          preparser.close();
+        }
       }
     }
   }
 
+  /**
+   * 把<mapper resource|url>的xml提交到线程池解析,打不开的资源留给顺序注册时按原来的方式报错
+   */
+  private MapperDocumentPreparser preparseMappers(XNode parent, MapperSnapshot snapshot) {
+    final MapperDocumentPreparser preparser = new MapperDocumentPreparser(configuration, snapshot, configuration.getMapperParseThreads());
+    for (XNode child : parent.getChildren()) {
+      if (!"mapper".equals(child.getName())) {
+        continue;
+      }
+      String resource = child.getStringAttribute("resource");
+      String url = child.getStringAttribute("url");
+      String mapperClass = child.getStringAttribute("class");
+      try {
+        if (resource != null && url == null && mapperClass == null) {
+          preparser.submit(child, resource, Resources.getResourceAsStream(resource));
+        } else if (resource == null && url != null && mapperClass == null) {
+          preparser.submit(child, url, Resources.getUrlAsStream(url));
+        }
+      } catch (IOException e) {
+        // reported in document order by mapperElement
+      }
+    }
+    return preparser;
+  }
+
+
   private boolean isSpecifiedEnvironment(String id) {
     if (environment == null) {
       throw new BuilderException("No environment specified.");
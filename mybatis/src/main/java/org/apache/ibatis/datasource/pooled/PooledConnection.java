@@ -29,6 +29,7 @@ import org.apache.ibatis.reflection.ExceptionUtil;
 class PooledConnection implements InvocationHandler {
 
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
   private int hashCode = 0;
@@ -48,6 +49,8 @@ class PooledConnection implements InvocationHandler {
   private int connectionTypeCode;
   //是否要被校验
   private boolean valid;
+  //物理连接上的PreparedStatement缓存,没有开启时为null
+  private PooledStatementCache statementCache;
 
   /*
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in
@@ -59,6 +62,17 @@ class PooledConnection implements InvocationHandler {
    * @param dataSource - the dataSource that the connection is from                             获取connection的datasource
    */
   public PooledConnection(Connection connection, PooledDataSource dataSource) {
+    this(connection, dataSource, dataSource.newStatementCache());
+  }
+
+  /*
+   * Constructor for a pooled connection that reuses the statement cache of the previous wrapper of the same real connection
+   *
+   * @param connection - the connection that is to be presented as a pooled connection
+   * @param dataSource - the dataSource that the connection is from
+   * @param statementCache - the prepared statements of the real connection, or null if caching is disabled
+   */
+  PooledConnection(Connection connection, PooledDataSource dataSource, PooledStatementCache statementCache) {
     //数据库连接的hashcode
     this.hashCode = connection.hashCode();
     //原生的数据库连接connection
@@ -70,6 +84,7 @@ class PooledConnection implements InvocationHandler {
     this.lastUsedTimestamp = System.currentTimeMillis();
     
     this.valid = true;
+    this.statementCache = statementCache;
     //Connection类的代理，使用的是当前类PooledConnection做代理
     this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
   }
@@ -109,6 +124,15 @@ class PooledConnection implements InvocationHandler {
     return proxyConnection;
   }
 
+  /*
+   * Getter for the prepared statement cache of the real connection
+   *
+   * @return The cache, or null if statement caching is disabled
+   */
+  PooledStatementCache getStatementCache() {
+    return statementCache;
+  }
+
   /*
    * Gets the hashcode of the real connection (or 0 if it is null)
    *
@@ -261,6 +285,9 @@ class PooledConnection implements InvocationHandler {
           // throw an SQLException instead of a Runtime
           checkConnection();
         }
+        if (statementCache != null && PREPARE_STATEMENT.equals(methodName) && PooledStatementCache.isCacheable(method)) {
+          return statementCache.prepareStatement(realConnection, args);
+        }
         return method.invoke(realConnection, args);
       } catch (Throwable t) {
         throw ExceptionUtil.unwrapThrowable(t);
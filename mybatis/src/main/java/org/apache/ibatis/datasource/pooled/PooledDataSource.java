@@ -57,6 +57,8 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled = false;
   protected int poolPingConnectionsNotUsedFor = 0;
+  //每个物理连接最多缓存的PreparedStatement个数,0表示不缓存
+  protected int poolPreparedStatementCacheSize = 0;
 
   
   private int expectedConnectionTypeCode;
@@ -262,6 +264,17 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /*
+   * The number of prepared statements each pooled connection keeps open for reuse across sessions.
+   * Least recently used statements are closed first. Zero disables the cache.
+   *
+   * @param poolPreparedStatementCacheSize the number of statements cached per connection
+   */
+  public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+    this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+    forceCloseAll();
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -318,6 +331,14 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  public int getPoolPreparedStatementCacheSize() {
+    return poolPreparedStatementCacheSize;
+  }
+
+  PooledStatementCache newStatementCache() {
+    return poolPreparedStatementCacheSize > 0 ? new PooledStatementCache(poolPreparedStatementCacheSize) : null;
+  }
+
   /*
    * Closes all active and idle connections in the pool
    * 关闭所有活动和空闲的连接
@@ -396,7 +417,7 @@ public class PooledDataSource implements DataSource {
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
-          PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+          PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this, conn.getStatementCache());
           state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
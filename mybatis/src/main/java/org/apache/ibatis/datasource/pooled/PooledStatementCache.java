@@ -0,0 +1,229 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 一个物理连接上的PreparedStatement缓存
+ * 连接归还到连接池以后缓存跟着物理连接走,之后的会话(包括SimpleExecutor)再准备相同的sql时直接复用;
+ * 按最近最少使用淘汰,最多保留poolPreparedStatementCacheSize个statement
+ * 只缓存prepareStatement(sql)和prepareStatement(sql, resultSetType, resultSetConcurrency),
+ * 以sql和两个结果集参数作为key
+ */
+class PooledStatementCache {
+
+  private static final Log log = LogFactory.getLog(PooledStatementCache.class);
+
+  private static final String CLOSE = "close";
+  private static final String IS_CLOSED = "isClosed";
+  private static final String ADD_BATCH = "addBatch";
+  private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+
+  private final Map<StatementKey, CachedStatement> statements;
+
+  public PooledStatementCache(final int size) {
+    //accessOrder为true,按访问顺序排序,最老的就是最近最少使用的
+    this.statements = new LinkedHashMap<StatementKey, CachedStatement>(16, 0.75f, true) {
+      private static final long serialVersionUID = 4267176411845948333L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest) {
+        if (size() > size) {
+          eldest.getValue().evict();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public static boolean isCacheable(Method method) {
+    Class<?>[] types = method.getParameterTypes();
+    return types.length == 1 || (types.length == 3 && types[1] == int.class && types[2] == int.class);
+  }
+
+  public PreparedStatement prepareStatement(Connection connection, Object[] args) throws SQLException {
+    final String sql = (String) args[0];
+    final int resultSetType = args.length == 3 ? (Integer) args[1] : ResultSet.TYPE_FORWARD_ONLY;
+    final int resultSetConcurrency = args.length == 3 ? (Integer) args[2] : ResultSet.CONCUR_READ_ONLY;
+    StatementKey key = new StatementKey(sql, resultSetType, resultSetConcurrency);
+    CachedStatement cached = statements.get(key);
+    if (cached != null) {
+      if (!cached.inUse) {
+        return cached.checkout();
+      }
+      //同一个sql的statement还在使用中(比如嵌套查询),这次另外准备一个不缓存的
+      return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+    }
+    PreparedStatement statement = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+    cached = new CachedStatement(key, statement);
+    statements.put(key, cached);
+    return cached.checkout();
+  }
+
+  public int size() {
+    return statements.size();
+  }
+
+  private void discard(CachedStatement cached) {
+    if (statements.get(cached.key) == cached) {
+      statements.remove(cached.key);
+    }
+  }
+
+  private class CachedStatement implements InvocationHandler {
+
+    private final StatementKey key;
+    private final PreparedStatement statement;
+    private final PreparedStatement proxy;
+    //创建时驱动给的默认值,StatementHandler只在配置了时才设置,归还时要恢复
+    private final int defaultFetchSize;
+    private final int defaultMaxRows;
+    private final int defaultQueryTimeout;
+    private boolean inUse;
+    private boolean evicted;
+    private boolean batched;
+
+    private CachedStatement(StatementKey key, PreparedStatement statement) throws SQLException {
+      this.key = key;
+      this.statement = statement;
+      this.defaultFetchSize = statement.getFetchSize();
+      this.defaultMaxRows = statement.getMaxRows();
+      this.defaultQueryTimeout = statement.getQueryTimeout();
+      this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES, this);
+    }
+
+    private PreparedStatement checkout() {
+      inUse = true;
+      return proxy;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String methodName = method.getName();
+      if (CLOSE.equals(methodName) && method.getParameterTypes().length == 0) {
+        release();
+        return null;
+      } else if (IS_CLOSED.equals(methodName) && method.getParameterTypes().length == 0 && !inUse) {
+        //借出期间的isClosed(JDBC 4)和其他方法一样交给真实的statement
+        return true;
+      }
+      if (!inUse && !Object.class.equals(method.getDeclaringClass())) {
+        throw new SQLException("Error accessing cached PreparedStatement. Statement is closed.");
+      }
+      if (ADD_BATCH.equals(methodName)) {
+        batched = true;
+      }
+      try {
+        return method.invoke(statement, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+
+    private void release() {
+      if (!inUse) {
+        return;
+      }
+      inUse = false;
+      if (evicted) {
+        closeQuietly();
+        return;
+      }
+      try {
+        statement.clearParameters();
+        if (batched) {
+          batched = false;
+          statement.clearBatch();
+        }
+        statement.clearWarnings();
+        if (statement.getFetchSize() != defaultFetchSize) {
+          statement.setFetchSize(defaultFetchSize);
+        }
+        if (statement.getMaxRows() != defaultMaxRows) {
+          statement.setMaxRows(defaultMaxRows);
+        }
+        if (statement.getQueryTimeout() != defaultQueryTimeout) {
+          statement.setQueryTimeout(defaultQueryTimeout);
+        }
+      } catch (SQLException e) {
+        //恢复失败的statement不能再复用
+        if (log.isDebugEnabled()) {
+          log.debug("Discarding cached statement: " + e.getMessage());
+        }
+        discard(this);
+        closeQuietly();
+      }
+    }
+
+    private void evict() {
+      evicted = true;
+      if (!inUse) {
+        closeQuietly();
+      }
+    }
+
+    private void closeQuietly() {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        // ignore
+      }
+    }
+  }
+
+  private static class StatementKey {
+
+    private final String sql;
+    private final int resultSetType;
+    private final int resultSetConcurrency;
+    private final int hashCode;
+
+    private StatementKey(String sql, int resultSetType, int resultSetConcurrency) {
+      this.sql = sql;
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+      this.hashCode = (sql.hashCode() * 31 + resultSetType) * 31 + resultSetConcurrency;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof StatementKey)) {
+        return false;
+      }
+      StatementKey other = (StatementKey) obj;
+      return resultSetType == other.resultSetType && resultSetConcurrency == other.resultSetConcurrency && sql.equals(other.sql);
+    }
+  }
+
+}
@@ -20,11 +20,18 @@ import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOL
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.bulk.BulkLoadContext;
+import org.apache.ibatis.executor.bulk.BulkLoadSink;
+import org.apache.ibatis.executor.loader.NestedQueryBatch;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.logging.jdbc.ConnectionLogger;
@@ -36,11 +43,11 @@ import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.KeysetRowBounds;
 import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
-import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
  * @author Clinton Begin
@@ -184,6 +191,19 @@ public abstract class BaseExecutor implements Executor {
     return list;
   }
 
+  /**
+   * 返回cursor,不使用一级缓存,数据行在迭代cursor的时候才会映射
+   */
+  public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+    BoundSql boundSql = ms.getBoundSql(parameter);
+    ErrorContext.instance().resource(ms.getResource()).activity("executing a query").object(ms.getId());
+    if (closed) throw new ExecutorException("Executor was closed.");
+    if (queryStack == 0 && ms.isFlushCacheRequired()) {
+      clearLocalCache();
+    }
+    return doQueryCursor(ms, parameter, rowBounds, boundSql);
+  }
+
   public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType) {
     if (closed) throw new ExecutorException("Executor was closed.");
     DeferredLoad deferredLoad = new DeferredLoad(resultObject, property, key, localCache, configuration, targetType);
@@ -194,6 +214,88 @@ public abstract class BaseExecutor implements Executor {
     }
   }
 
+  /**
+   * 用batchSelect一次查出batch里所有还没有缓存的key,按key分组后放进一级缓存
+   * 之前登记的deferLoad会在最外层查询结束时从一级缓存里取值
+   */
+  public void loadBatch(NestedQueryBatch batch) throws SQLException {
+    if (closed) throw new ExecutorException("Executor was closed.");
+    final List<CacheKey> keys = new ArrayList<CacheKey>();
+    final List<Object> parameters = new ArrayList<Object>();
+    for (Map.Entry<CacheKey, Object> entry : batch.getParameters().entrySet()) {
+      //已经缓存(包括正在执行)的key不需要再查,先放占位符防止嵌套查询循环引用
+      if (localCache.getObject(entry.getKey()) == null) {
+        keys.add(entry.getKey());
+        parameters.add(entry.getValue());
+        localCache.putObject(entry.getKey(), EXECUTION_PLACEHOLDER);
+      }
+    }
+    final int batchSize = Math.max(1, configuration.getNestedSelectBatchSize());
+    try {
+      for (int start = 0; start < keys.size(); start += batchSize) {
+        int end = Math.min(start + batchSize, keys.size());
+        List<Object> chunk = new ArrayList<Object>(parameters.subList(start, end));
+        List<Object> results = query(batch.getBatchQuery(), batch.wrapParameters(chunk), RowBounds.DEFAULT, NO_RESULT_HANDLER);
+        Map<Object, List<Object>> grouped = batch.groupByKey(configuration, results, chunk);
+        for (int i = start; i < end; i++) {
+          List<Object> list = grouped.get(NestedQueryBatch.normalizeKey(parameters.get(i)));
+          localCache.putObject(keys.get(i), list != null ? list : new ArrayList<Object>());
+        }
+      }
+    } finally {
+      for (CacheKey key : keys) {
+        if (localCache.getObject(key) == EXECUTION_PLACEHOLDER) {
+          localCache.removeObject(key);
+        }
+      }
+    }
+  }
+  /**
+   * 批量导入:先执行等待中的批次,再交给Configuration里第一个支持这个语句的BulkLoadSink
+   * 导入的行不会回填生成的主键
+   */
+  public long bulkLoad(MappedStatement ms, Iterable<?> parameters) throws SQLException {
+    ErrorContext.instance().resource(ms.getResource()).activity("executing a bulk load").object(ms.getId());
+    if (closed) throw new ExecutorException("Executor was closed.");
+    clearLocalCache();
+    flushStatements();
+    final Iterator<?> iterator = parameters.iterator();
+    if (!iterator.hasNext()) {
+      return 0;
+    }
+    final Object first = iterator.next();
+    final BulkLoadContext context = new BulkLoadContext(configuration, wrapper, ms, getConnection(ms.getStatementLog()));
+    for (BulkLoadSink sink : configuration.getBulkLoadSinks()) {
+      if (sink.supports(context, first)) {
+        return sink.load(context, prepend(first, iterator));
+      }
+    }
+    throw new ExecutorException("No bulk load sink supports statement " + ms.getId() + ".");
+  }
+
+  private static <T> Iterator<T> prepend(final T first, final Iterator<? extends T> rest) {
+    return new Iterator<T>() {
+      private boolean firstReturned;
+
+      public boolean hasNext() {
+        return !firstReturned || rest.hasNext();
+      }
+
+      public T next() {
+        if (!firstReturned) {
+          firstReturned = true;
+          return first;
+        }
+        return rest.next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+
   
   /**
    * 根据
@@ -212,34 +314,22 @@ public abstract class BaseExecutor implements Executor {
     //内存分页
     cacheKey.update(rowBounds.getOffset());
     cacheKey.update(rowBounds.getLimit());
+    //keyset分页时offset总是0,需要把key列和上一页的key也放进cachekey
+    if (rowBounds instanceof KeysetRowBounds) {
+      KeysetRowBounds keysetRowBounds = (KeysetRowBounds) rowBounds;
+      cacheKey.update(keysetRowBounds.getKeyColumn());
+      cacheKey.update(keysetRowBounds.getLastKey());
+    }
     //sql语句
     cacheKey.update(boundSql.getSql());
     //遍历ParameterMapping，每个类里的字段都有一个ParameterMapping，并且把字段的value放到cachekey里边
+    //value由boundSql解析一次，之后DefaultParameterHandler给PreparedStatement赋值时复用
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
-    TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
-    for (int i = 0; i < parameterMappings.size(); i++) { // mimic DefaultParameterHandler logic
-      ParameterMapping parameterMapping = parameterMappings.get(i);
-      if (parameterMapping.getMode() != ParameterMode.OUT) {
-        Object value;
-        String propertyName = parameterMapping.getProperty();
-        //从parameterObject获取propertyName的value
-        //如果boundsql的additionalParameter（map）里边有propertyName，从map里边获取value
-        if (boundSql.hasAdditionalParameter(propertyName)) {
-          value = boundSql.getAdditionalParameter(propertyName);
-          //如果parameterObject=null，value设置为null
-        } else if (parameterObject == null) {
-          value = null;
-          //如果parameterObject是基本类型，value直接为parameterObject
-        } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
-          value = parameterObject;
-          
-          //使用parameterObject构建MetaObject，利用metaobject获取value
-        } else {
-          MetaObject metaObject = configuration.newMetaObject(parameterObject);
-          value = metaObject.getValue(propertyName);
-        }
+    Object[] values = boundSql.getParameterValues(configuration);
+    for (int i = 0; i < parameterMappings.size(); i++) {
+      if (parameterMappings.get(i).getMode() != ParameterMode.OUT) {
         //将value放入cachekey
-        cacheKey.update(value);
+        cacheKey.update(values[i]);
       }
     }
     return cacheKey;
@@ -301,6 +391,12 @@ public abstract class BaseExecutor implements Executor {
   protected abstract <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException;
 
+  /**
+   * 返回的cursor持有statement,cursor关闭或者读完的时候关闭statement
+   */
+  protected abstract <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql)
+      throws SQLException;
+
   
   /**
    * 关闭statement
@@ -15,20 +15,36 @@
  */
 package org.apache.ibatis.executor;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.ExceptionUtil;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -41,8 +57,21 @@ public class BatchExecutor extends BaseExecutor {
 
   public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
 
+  //只有 INSERT INTO table [(columns)] VALUES (...) 这种简单形式,并且VALUES里不包含括号的语句才会被合并
+  private static final Pattern SIMPLE_INSERT = Pattern.compile("^\\s*(insert\\s+into\\s+[^()]+?(?:\\([^()]*\\))?\\s*values)\\s*(\\([^()]*\\))\\s*$",
+      Pattern.CASE_INSENSITIVE);
+
   private final List<Statement> statementList = new ArrayList<Statement>();
   private final List<BatchResult> batchResultList = new ArrayList<BatchResult>();
+  //batchGroupStatements开启时,按MappedStatement和sql找到已经准备好的statement
+  private final Map<MappedStatement, Map<String, Integer>> statementIndex = new HashMap<MappedStatement, Map<String, Integer>>();
+  //达到batchFlushSize自动执行过的结果,下一次flushStatements时一起返回
+  private final List<BatchResult> flushedResultList = new ArrayList<BatchResult>();
+  //batchRewriteInserts开启时还没有绑定的INSERT行,凑够一组后合并成一条多行VALUES语句
+  private final List<InsertRewrite> insertRewrites = new ArrayList<InsertRewrite>();
+  //合并过的statement每次addBatch包含的行数,用来把更新条数展开到每一行
+  private final Map<Statement, Integer> rewrittenRows = new IdentityHashMap<Statement, Integer>();
+  private int pendingCount;
   private String currentSql;
   private MappedStatement currentStatement;
 
@@ -55,25 +84,198 @@ public class BatchExecutor extends BaseExecutor {
     final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
+    if (configuration.isBatchRewriteInserts()) {
+      InsertRewrite rewrite = insertRewriteFor(ms, boundSql);
+      if (!configuration.isBatchGroupStatements()) {
+        //保持执行顺序,前面不同语句的行先合并
+        closeInsertRewritesExcept(rewrite);
+      }
+      if (rewrite != null) {
+        rewrite.add(handler, parameterObject, configuration);
+        if (rewrite.isFull()) {
+          bindInsertRewrite(rewrite);
+        }
+        pendingCount++;
+        flushIfFull();
+        return BATCH_UPDATE_RETURN_VALUE;
+      }
+    }
     final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
-      BatchResult batchResult = batchResultList.get(last);
+    final int index = indexOfStatement(ms, sql);
+    if (index >= 0) {
+      stmt = statementList.get(index);
+      BatchResult batchResult = batchResultList.get(index);
       batchResult.addParameterObject(parameterObject);
     } else {
       Connection connection = getConnection(ms.getStatementLog());
       stmt = handler.prepare(connection);
       currentSql = sql;
       currentStatement = ms;
+      if (configuration.isBatchGroupStatements()) {
+        Map<String, Integer> bySql = statementIndex.get(ms);
+        if (bySql == null) {
+          bySql = new HashMap<String, Integer>();
+          statementIndex.put(ms, bySql);
+        }
+        bySql.put(sql, statementList.size());
+      }
       statementList.add(stmt);
       batchResultList.add(new BatchResult(ms, sql, parameterObject));
     }
     handler.parameterize(stmt);
     handler.batch(stmt);
+    pendingCount++;
+    flushIfFull();
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private void flushIfFull() throws SQLException {
+    final int batchFlushSize = configuration.getBatchFlushSize();
+    if (batchFlushSize > 0 && pendingCount >= batchFlushSize) {
+      try {
+        closeInsertRewritesExcept(null);
+        executeBatches(statementList, batchResultList, rewrittenRows, flushedResultList);
+      } finally {
+        closeStatements();
+      }
+    }
+  }
+
+  /**
+   * 找到或者创建sql对应的合并组,语句不能合并时返回null
+   */
+  private InsertRewrite insertRewriteFor(MappedStatement ms, BoundSql boundSql) {
+    final String sql = boundSql.getSql();
+    for (InsertRewrite rewrite : insertRewrites) {
+      if (rewrite.ms == ms && rewrite.sql.equals(sql)) {
+        return rewrite;
+      }
+    }
+    if (ms.getSqlCommandType() != SqlCommandType.INSERT || ms.getStatementType() != StatementType.PREPARED) {
+      return null;
+    }
+    Matcher matcher = SIMPLE_INSERT.matcher(sql);
+    if (!matcher.matches()) {
+      return null;
+    }
+    final String values = matcher.group(2);
+    final int parametersPerRow = boundSql.getParameterMappings().size();
+    int placeholders = 0;
+    for (int i = 0; i < values.length(); i++) {
+      if (values.charAt(i) == '?') {
+        placeholders++;
+      }
+    }
+    //占位符必须都在VALUES里,否则没法按行偏移参数下标
+    if (parametersPerRow == 0 || placeholders != parametersPerRow) {
+      return null;
+    }
+    final int rowsPerStatement = configuration.getBatchRewriteMaxParameters() / parametersPerRow;
+    if (rowsPerStatement < 2) {
+      return null;
+    }
+    InsertRewrite rewrite = new InsertRewrite(ms, sql, matcher.group(1), values, parametersPerRow, rowsPerStatement);
+    insertRewrites.add(rewrite);
+    return rewrite;
+  }
+
+  private void closeInsertRewritesExcept(InsertRewrite open) throws SQLException {
+    for (Iterator<InsertRewrite> it = insertRewrites.iterator(); it.hasNext();) {
+      InsertRewrite rewrite = it.next();
+      if (rewrite != open) {
+        if (!rewrite.handlers.isEmpty()) {
+          bindInsertRewrite(rewrite);
+        }
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * 把组里等待的行绑定到一条多行VALUES语句上,满组的语句在组内复用
+   */
+  private void bindInsertRewrite(InsertRewrite rewrite) throws SQLException {
+    final int rows = rewrite.handlers.size();
+    final boolean full = rows == rewrite.rowsPerStatement;
+    final PreparedStatement stmt;
+    final BatchResult batchResult;
+    if (full && rewrite.fullStatementIndex >= 0) {
+      stmt = (PreparedStatement) statementList.get(rewrite.fullStatementIndex);
+      batchResult = batchResultList.get(rewrite.fullStatementIndex);
+    } else {
+      final String sql = rewrite.rewrittenSql(rows);
+      final Object firstParameter = rewrite.parameterObjects.get(0);
+      final BoundSql boundSql = rewrite.handlers.get(0).getBoundSql().rewrite(configuration, sql, rewrite.rewrittenParameterMappings(rows));
+      final StatementHandler handler = configuration.newStatementHandler(this, rewrite.ms, firstParameter, RowBounds.DEFAULT, null, boundSql);
+      stmt = (PreparedStatement) handler.prepare(getConnection(rewrite.ms.getStatementLog()));
+      batchResult = new BatchResult(rewrite.ms, sql);
+      if (full) {
+        rewrite.fullStatementIndex = statementList.size();
+      }
+      //最后一个statement已经不是currentSql的了
+      currentSql = null;
+      currentStatement = null;
+      statementList.add(stmt);
+      batchResultList.add(batchResult);
+      rewrittenRows.put(stmt, rows);
+    }
+    for (int i = 0; i < rows; i++) {
+      rewrite.handlers.get(i).parameterize(shiftParameters(stmt, i * rewrite.parametersPerRow));
+      batchResult.addParameterObject(rewrite.parameterObjects.get(i));
+    }
+    stmt.addBatch();
+    rewrite.handlers.clear();
+    rewrite.parameterObjects.clear();
+  }
+
+  /**
+   * 包装statement,把setXxx(index, ...)的下标往后移offset,每一行的ParameterHandler照常从1开始绑定
+   */
+  private static PreparedStatement shiftParameters(final PreparedStatement statement, final int offset) {
+    if (offset == 0) {
+      return statement;
+    }
+    InvocationHandler shifter = new InvocationHandler() {
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (args != null && args.length > 1 && method.getName().startsWith("set") && method.getParameterTypes()[0] == int.class) {
+          args[0] = (Integer) args[0] + offset;
+        }
+        try {
+          return method.invoke(statement, args);
+        } catch (Throwable t) {
+          throw ExceptionUtil.unwrapThrowable(t);
+        }
+      }
+    };
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, shifter);
+  }
+
+  /**
+   * 合并过的语句每次执行只返回一个更新条数,展开成每一行一个
+   */
+  private static int[] expandUpdateCounts(int[] updateCounts, int rows) {
+    int[] expanded = new int[updateCounts.length * rows];
+    for (int i = 0; i < updateCounts.length; i++) {
+      Arrays.fill(expanded, i * rows, (i + 1) * rows, updateCounts[i] == rows ? 1 : Statement.SUCCESS_NO_INFO);
+    }
+    return expanded;
+  }
+
+  /**
+   * 默认只有和上一次相同的语句才能加到同一个批次;batchGroupStatements开启时交替执行的语句也能各自归到自己的批次
+   */
+  private int indexOfStatement(MappedStatement ms, String sql) {
+    if (configuration.isBatchGroupStatements()) {
+      Map<String, Integer> bySql = statementIndex.get(ms);
+      Integer index = bySql == null ? null : bySql.get(sql);
+      return index == null ? -1 : index;
+    }
+    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+      return statementList.size() - 1;
+    }
+    return -1;
+  }
+
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
     Statement stmt = null;
@@ -90,53 +292,142 @@ public class BatchExecutor extends BaseExecutor {
     }
   }
 
+  public <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+    flushStatements();
+    Configuration configuration = ms.getConfiguration();
+    StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+    Connection connection = getConnection(ms.getStatementLog());
+    Statement stmt = handler.prepare(connection);
+    try {
+      handler.parameterize(stmt);
+      return handler.<E>queryCursor(stmt);
+    } catch (SQLException e) {
+      closeStatement(stmt);
+      throw e;
+    } catch (RuntimeException e) {
+      closeStatement(stmt);
+      throw e;
+    }
+  }
+
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
     try {
-      List<BatchResult> results = new ArrayList<BatchResult>();
       if (isRollback) {
         return Collections.emptyList();
       } else {
-        for (int i = 0, n = statementList.size(); i < n; i++) {
-          Statement stmt = statementList.get(i);
-          BatchResult batchResult = batchResultList.get(i);
-          try {
-            batchResult.setUpdateCounts(stmt.executeBatch());
-            MappedStatement ms = batchResult.getMappedStatement();
-            List<Object> parameterObjects = batchResult.getParameterObjects();
-            KeyGenerator keyGenerator = ms.getKeyGenerator();
-            if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-              Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-              jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-            } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-              for (Object parameter : parameterObjects) {
-                keyGenerator.processAfter(this, ms, stmt, parameter);
-              }
-            }
-          } catch (BatchUpdateException e) {
-            StringBuffer message = new StringBuffer();
-            message.append(batchResult.getMappedStatement().getId())
-                .append(" (batch index #")
-                .append(i + 1)
-                .append(")")
-                .append(" failed.");
-            if (i > 0) {
-              message.append(" ")
-                  .append(i)
-                  .append(" prior sub executor(s) completed successfully, but will be rolled back.");
-            }
-            throw new BatchExecutorException(message.toString(), e, results, batchResult);
-          }
-          results.add(batchResult);
-        }
+        List<BatchResult> results = new ArrayList<BatchResult>(flushedResultList);
+        closeInsertRewritesExcept(null);
+        executeBatches(statementList, batchResultList, rewrittenRows, results);
         return results;
       }
     } finally {
-      for (Statement stmt : statementList) {
-        closeStatement(stmt);
+      closeStatements();
+      flushedResultList.clear();
+    }
+  }
+
+  private void executeBatches(List<Statement> statements, List<BatchResult> batchResults, Map<Statement, Integer> rewrittenRows,
+      List<BatchResult> results) throws SQLException {
+    for (int i = 0, n = statements.size(); i < n; i++) {
+      Statement stmt = statements.get(i);
+      BatchResult batchResult = batchResults.get(i);
+      try {
+        int[] updateCounts = stmt.executeBatch();
+        Integer rows = rewrittenRows.get(stmt);
+        batchResult.setUpdateCounts(rows == null ? updateCounts : expandUpdateCounts(updateCounts, rows));
+        MappedStatement ms = batchResult.getMappedStatement();
+        List<Object> parameterObjects = batchResult.getParameterObjects();
+        KeyGenerator keyGenerator = ms.getKeyGenerator();
+        if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+          Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+          jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
+        } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+          for (Object parameter : parameterObjects) {
+            keyGenerator.processAfter(this, ms, stmt, parameter);
+          }
+        }
+      } catch (BatchUpdateException e) {
+        StringBuffer message = new StringBuffer();
+        message.append(batchResult.getMappedStatement().getId())
+            .append(" (batch index #")
+            .append(results.size() + 1)
+            .append(")")
+            .append(" failed.");
+        if (!results.isEmpty()) {
+          message.append(" ")
+              .append(results.size())
+              .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+        }
+        throw new BatchExecutorException(message.toString(), e, new ArrayList<BatchResult>(results), batchResult);
       }
-      currentSql = null;
-      statementList.clear();
-      batchResultList.clear();
+      results.add(batchResult);
+    }
+  }
+
+  private void closeStatements() {
+    for (Statement stmt : statementList) {
+      closeStatement(stmt);
+    }
+    currentSql = null;
+    currentStatement = null;
+    statementList.clear();
+    batchResultList.clear();
+    statementIndex.clear();
+    insertRewrites.clear();
+    rewrittenRows.clear();
+    pendingCount = 0;
+  }
+
+  private static class InsertRewrite {
+
+    private final MappedStatement ms;
+    private final String sql;
+    private final String insertPrefix;
+    private final String values;
+    private final int parametersPerRow;
+    private final int rowsPerStatement;
+    private final List<StatementHandler> handlers = new ArrayList<StatementHandler>();
+    private final List<Object> parameterObjects = new ArrayList<Object>();
+    private int fullStatementIndex = -1;
+
+    private InsertRewrite(MappedStatement ms, String sql, String insertPrefix, String values, int parametersPerRow, int rowsPerStatement) {
+      this.ms = ms;
+      this.sql = sql;
+      this.insertPrefix = insertPrefix;
+      this.values = values;
+      this.parametersPerRow = parametersPerRow;
+      this.rowsPerStatement = rowsPerStatement;
+    }
+
+    /**
+     * 行要等凑够一组才绑定,先把参数值取出来缓存在BoundSql里,调用方复用并修改同一个参数对象时每一行还是当时的值
+     */
+    private void add(StatementHandler handler, Object parameterObject, Configuration configuration) {
+      handler.getBoundSql().getParameterValues(configuration);
+      handlers.add(handler);
+      parameterObjects.add(parameterObject);
+    }
+
+    private boolean isFull() {
+      return handlers.size() >= rowsPerStatement;
+    }
+
+    private String rewrittenSql(int rows) {
+      StringBuilder rewritten = new StringBuilder(insertPrefix.length() + (values.length() + 2) * rows);
+      rewritten.append(insertPrefix).append(' ').append(values);
+      for (int i = 1; i < rows; i++) {
+        rewritten.append(", ").append(values);
+      }
+      return rewritten.toString();
+    }
+
+    private List<ParameterMapping> rewrittenParameterMappings(int rows) {
+      List<ParameterMapping> rowMappings = handlers.get(0).getBoundSql().getParameterMappings();
+      List<ParameterMapping> mappings = new ArrayList<ParameterMapping>(rowMappings.size() * rows);
+      for (int i = 0; i < rows; i++) {
+        mappings.addAll(rowMappings);
+      }
+      return mappings;
     }
   }
 
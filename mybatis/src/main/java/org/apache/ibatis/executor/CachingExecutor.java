@@ -21,6 +21,8 @@ import java.util.List;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.loader.NestedQueryBatch;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
@@ -77,6 +79,11 @@ public class CachingExecutor implements Executor {
     return query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
   }
 
+  public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+    flushCacheIfRequired(ms);
+    return delegate.queryCursor(ms, parameter, rowBounds);
+  }
+
   public <E> List<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql)
       throws SQLException {
     Cache cache = ms.getCache();
@@ -137,6 +144,15 @@ public class CachingExecutor implements Executor {
     delegate.deferLoad(ms, resultObject, property, key, targetType);
   }
 
+  public void loadBatch(NestedQueryBatch batch) throws SQLException {
+    delegate.loadBatch(batch);
+  }
+
+  public long bulkLoad(MappedStatement ms, Iterable<?> parameters) throws SQLException {
+    flushCacheIfRequired(ms);
+    return delegate.bulkLoad(ms, parameters);
+  }
+
   public void clearLocalCache() {
     delegate.clearLocalCache();
   }
@@ -19,6 +19,8 @@ import java.sql.SQLException;
 import java.util.List;
 
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.loader.NestedQueryBatch;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.reflection.MetaObject;
@@ -39,6 +41,8 @@ public interface Executor {
 
   <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException;
 
+  <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException;
+
   List<BatchResult> flushStatements() throws SQLException;
 
   void commit(boolean required) throws SQLException;
@@ -53,6 +57,10 @@ public interface Executor {
 
   void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType);
 
+  void loadBatch(NestedQueryBatch batch) throws SQLException;
+
+  long bulkLoad(MappedStatement ms, Iterable<?> parameters) throws SQLException;
+
   Transaction getTransaction();
 
   void close(boolean forceRollback);
@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.bulk;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+
+/**
+ * 通用的导入方式:用语句本身的sql做JDBC批量INSERT,每bulkLoadBatchSize行执行一次
+ * 所有数据库都能用,也是没有其他sink支持时的退路
+ */
+public class BatchInsertBulkLoadSink implements BulkLoadSink {
+
+  public boolean supports(BulkLoadContext context, Object first) {
+    return true;
+  }
+
+  public long load(BulkLoadContext context, Iterator<?> parameters) throws SQLException {
+    final Connection connection = context.getConnection();
+    final int batchSize = context.getBatchSize();
+    long rows = 0;
+    int pending = 0;
+    String currentSql = null;
+    Statement stmt = null;
+    try {
+      while (parameters.hasNext()) {
+        StatementHandler handler = context.newStatementHandler(parameters.next());
+        String sql = handler.getBoundSql().getSql();
+        //动态sql每行可能不同,换了sql就先执行之前的批次
+        if (!sql.equals(currentSql)) {
+          if (stmt != null) {
+            executeBatch(stmt, pending);
+            pending = 0;
+            closeStatement(stmt);
+            stmt = null;
+          }
+          stmt = handler.prepare(connection);
+          currentSql = sql;
+        }
+        handler.parameterize(stmt);
+        handler.batch(stmt);
+        rows++;
+        if (++pending >= batchSize) {
+          executeBatch(stmt, pending);
+          pending = 0;
+        }
+      }
+      if (stmt != null) {
+        executeBatch(stmt, pending);
+      }
+      return rows;
+    } finally {
+      closeStatement(stmt);
+    }
+  }
+
+  private void executeBatch(Statement stmt, int pending) throws SQLException {
+    if (pending > 0) {
+      stmt.executeBatch();
+    }
+  }
+
+  private void closeStatement(Statement stmt) {
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        // ignore
+      }
+    }
+  }
+
+}
@@ -0,0 +1,240 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.bulk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 一次批量导入用到的东西:语句、连接,以及把参数对象按语句的TypeHandler编码成一行值
+ */
+public class BulkLoadContext {
+
+  //INSERT INTO table (columns) VALUES (?, ?, ...),列和占位符一一对应的才能用列清单导入
+  private static final Pattern COLUMN_INSERT = Pattern.compile("^\\s*insert\\s+into\\s+([^()\\s]+)\\s*\\(([^()]*)\\)\\s*values\\s*\\(([\\s?,]*)\\)\\s*$",
+      Pattern.CASE_INSENSITIVE);
+
+  private final Configuration configuration;
+  private final Executor executor;
+  private final MappedStatement mappedStatement;
+  private final Connection connection;
+
+  public BulkLoadContext(Configuration configuration, Executor executor, MappedStatement mappedStatement, Connection connection) {
+    this.configuration = configuration;
+    this.executor = executor;
+    this.mappedStatement = mappedStatement;
+    this.connection = connection;
+  }
+
+  public Configuration getConfiguration() {
+    return configuration;
+  }
+
+  public MappedStatement getMappedStatement() {
+    return mappedStatement;
+  }
+
+  public Connection getConnection() {
+    return connection;
+  }
+
+  public int getBatchSize() {
+    return Math.max(1, configuration.getBulkLoadBatchSize());
+  }
+
+  public StatementHandler newStatementHandler(Object parameter) {
+    return configuration.newStatementHandler(executor, mappedStatement, parameter, RowBounds.DEFAULT, null, null);
+  }
+
+  /**
+   * 用语句的ParameterHandler(也就是每个参数的TypeHandler)绑定一行,记录下绑定到每个占位符的值
+   * 字符流读成String,字节流读成byte[],Clob/Blob读出内容;Array、Ref、带Calendar的setter等没法编码成一个值的调用会抛出异常
+   * @return 按占位符顺序的值,setNull绑定的是null
+   */
+  public Object[] encodeRow(StatementHandler handler) {
+    final Object[] values = new Object[handler.getBoundSql().getParameterMappings().size()];
+    InvocationHandler recorder = new InvocationHandler() {
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().startsWith("set") && args != null && args.length > 1 && method.getParameterTypes()[0] == int.class) {
+          int index = (Integer) args[0] - 1;
+          if (index < 0 || index >= values.length) {
+            throw new ExecutorException("Parameter index " + (index + 1) + " is out of range for bulk load of " + mappedStatement.getId());
+          }
+          values[index] = method.getName().equals("setNull") ? null : recordedValue(method, args);
+          return null;
+        }
+        throw new UnsupportedOperationException("Bulk load cannot encode a call to " + method.getName());
+      }
+    };
+    PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, recorder);
+    try {
+      handler.parameterize(statement);
+    } catch (Exception e) {
+      throw new ExecutorException("Error encoding bulk load row for " + mappedStatement.getId() + ".  Cause: " + e, e);
+    }
+    return values;
+  }
+
+  /**
+   * 先编码一行看看,用到了没法编码的setter(比如ArrayTypeHandler的setArray)时返回false,交给下一个sink
+   */
+  public boolean canEncodeRow(StatementHandler handler) {
+    try {
+      encodeRow(handler);
+      return true;
+    } catch (ExecutorException e) {
+      if (e.getCause() instanceof UnsupportedOperationException) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private static Object recordedValue(Method method, Object[] args) throws IOException, SQLException {
+    final String name = method.getName();
+    final Object value = args[1];
+    if (value == null) {
+      return null;
+    }
+    if (args.length > 2 && !(name.equals("setObject") && args.length == 3)) {
+      // setXxx(int, x, Calendar)、setObject(int, x, type, scale)等,值还依赖其他参数
+      if (!(value instanceof Reader || value instanceof InputStream)) {
+        throw new UnsupportedOperationException("Bulk load cannot encode a call to " + name + " with " + args.length + " arguments");
+      }
+    }
+    if (value instanceof Reader) {
+      return readString((Reader) value);
+    } else if (value instanceof InputStream) {
+      byte[] bytes = readBytes((InputStream) value);
+      return name.equals("setAsciiStream") ? new String(bytes, "US-ASCII") : bytes;
+    } else if (value instanceof Clob) {
+      Clob clob = (Clob) value;
+      return clob.getSubString(1, (int) clob.length());
+    } else if (value instanceof Blob) {
+      Blob blob = (Blob) value;
+      return blob.getBytes(1, (int) blob.length());
+    } else if (value instanceof Array || value instanceof Ref || implementsType(value, "java.sql.RowId") || implementsType(value, "java.sql.SQLXML")
+        || name.equals("setUnicodeStream")) {
+      throw new UnsupportedOperationException("Bulk load cannot encode a call to " + name);
+    }
+    return value;
+  }
+
+  /**
+   * RowId和SQLXML是JDBC 4的类型,按类名判断,在java 5上也能运行
+   */
+  private static boolean implementsType(Object value, String typeName) {
+    if (value == null) {
+      return false;
+    }
+    for (Class<?> type = value.getClass(); type != null; type = type.getSuperclass()) {
+      if (hasInterface(type, typeName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasInterface(Class<?> type, String typeName) {
+    for (Class<?> iface : type.getInterfaces()) {
+      if (iface.getName().equals(typeName) || hasInterface(iface, typeName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String readString(Reader reader) throws IOException {
+    StringBuilder text = new StringBuilder();
+    char[] buffer = new char[4096];
+    for (int n; (n = reader.read(buffer)) > 0;) {
+      text.append(buffer, 0, n);
+    }
+    return text.toString();
+  }
+
+  private static byte[] readBytes(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int n; (n = inputStream.read(buffer)) > 0;) {
+      bytes.write(buffer, 0, n);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return 表名,sql不是列和占位符一一对应的INSERT时返回null
+   */
+  public static String getInsertTable(BoundSql boundSql) {
+    Matcher matcher = matchColumnInsert(boundSql);
+    return matcher == null ? null : matcher.group(1);
+  }
+
+  /**
+   * @return 列名,顺序和占位符一致;sql不是列和占位符一一对应的INSERT时返回空列表
+   */
+  public static List<String> getInsertColumns(BoundSql boundSql) {
+    Matcher matcher = matchColumnInsert(boundSql);
+    if (matcher == null) {
+      return Collections.emptyList();
+    }
+    List<String> columns = new ArrayList<String>();
+    for (String column : matcher.group(2).split(",")) {
+      columns.add(column.trim());
+    }
+    return columns;
+  }
+
+  private static Matcher matchColumnInsert(BoundSql boundSql) {
+    Matcher matcher = COLUMN_INSERT.matcher(boundSql.getSql());
+    if (!matcher.matches()) {
+      return null;
+    }
+    int columns = matcher.group(2).split(",").length;
+    int placeholders = matcher.group(3).split(",").length;
+    if (columns != placeholders || columns != boundSql.getParameterMappings().size()) {
+      return null;
+    }
+    return matcher;
+  }
+
+}
@@ -0,0 +1,41 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.bulk;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * 批量导入的目标,比如PostgreSQL的COPY;Configuration按顺序使用第一个supports的sink,
+ * 最后一个总是用JDBC批量INSERT的BatchInsertBulkLoadSink
+ */
+public interface BulkLoadSink {
+
+  /**
+   * @param context 语句、连接和参数编码
+   * @param first   第一个参数对象,可以用来检查生成的sql
+   * @return 能不能导入这个语句
+   */
+  boolean supports(BulkLoadContext context, Object first) throws SQLException;
+
+  /**
+   * @param context    语句、连接和参数编码
+   * @param parameters 要导入的参数对象,只能遍历一次
+   * @return 导入的行数
+   */
+  long load(BulkLoadContext context, Iterator<?> parameters) throws SQLException;
+
+}
@@ -0,0 +1,233 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.BoundSql;
+
+/**
+ * 用PostgreSQL驱动的CopyManager执行 COPY table (columns) FROM STDIN WITH CSV
+ * 参数对象在读取时才逐行编码成CSV,不会把整批数据放进内存;驱动只在运行时通过反射使用,不是编译依赖
+ */
+public class PostgresCopyBulkLoadSink implements BulkLoadSink {
+
+  private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  public boolean supports(BulkLoadContext context, Object first) throws SQLException {
+    BoundSql boundSql = context.getMappedStatement().getBoundSql(first);
+    return BulkLoadContext.getInsertTable(boundSql) != null && getCopyManager(context.getConnection()) != null
+        && context.canEncodeRow(context.newStatementHandler(first));
+  }
+
+  public long load(BulkLoadContext context, Iterator<?> parameters) throws SQLException {
+    if (!parameters.hasNext()) {
+      return 0;
+    }
+    final Object copyManager = getCopyManager(context.getConnection());
+    final StatementHandler first = context.newStatementHandler(parameters.next());
+    final BoundSql boundSql = first.getBoundSql();
+    final String copySql = "COPY " + BulkLoadContext.getInsertTable(boundSql) + " (" + join(BulkLoadContext.getInsertColumns(boundSql))
+        + ") FROM STDIN WITH CSV";
+    try {
+      Method copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+      return (Long) copyIn.invoke(copyManager, copySql, new CsvRowReader(context, first, parameters));
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getTargetException();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      }
+      throw new ExecutorException("Error copying rows into " + context.getMappedStatement().getId() + ".  Cause: " + cause, cause);
+    } catch (NoSuchMethodException e) {
+      throw new ExecutorException("PostgreSQL driver does not support CopyManager.copyIn(String, Reader).", e);
+    } catch (IllegalAccessException e) {
+      throw new ExecutorException("Could not access PostgreSQL CopyManager.  Cause: " + e, e);
+    }
+  }
+
+  private Object getCopyManager(Connection connection) throws SQLException {
+    final Class<?> pgConnectionType;
+    try {
+      pgConnectionType = Resources.classForName(PG_CONNECTION);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    Connection pgConnection = unwrap(connection, pgConnectionType);
+    if (pgConnection == null) {
+      return null;
+    }
+    try {
+      return pgConnectionType.getMethod("getCopyAPI").invoke(pgConnection);
+    } catch (InvocationTargetException e) {
+      if (e.getTargetException() instanceof SQLException) {
+        throw (SQLException) e.getTargetException();
+      }
+      throw new ExecutorException("Could not get PostgreSQL CopyManager.  Cause: " + e.getTargetException(), e.getTargetException());
+    } catch (Exception e) {
+      throw new ExecutorException("Could not get PostgreSQL CopyManager.  Cause: " + e, e);
+    }
+  }
+
+  private Connection unwrap(Connection connection, Class<?> type) {
+    if (type.isInstance(connection)) {
+      return connection;
+    }
+    //isWrapperFor和unwrap是JDBC 4的方法,用反射调用,JDBC 3的驱动没有这两个方法
+    try {
+      if ((Boolean) Connection.class.getMethod("isWrapperFor", Class.class).invoke(connection, type)) {
+        return (Connection) Connection.class.getMethod("unwrap", Class.class).invoke(connection, type);
+      }
+    } catch (NoSuchMethodException e) {
+      // java 5
+    } catch (IllegalAccessException e) {
+      // not accessible
+    } catch (InvocationTargetException e) {
+      // not a wrapper, or a JDBC 3 driver (AbstractMethodError)
+    }
+    Connection real = PooledDataSource.unwrapConnection(connection);
+    return type.isInstance(real) ? real : null;
+  }
+
+  private static String join(List<String> columns) {
+    StringBuilder joined = new StringBuilder();
+    for (String column : columns) {
+      if (joined.length() > 0) {
+        joined.append(", ");
+      }
+      joined.append(column);
+    }
+    return joined.toString();
+  }
+
+  /**
+   * CSV格式:null是不加引号的空值,字符串都加引号,bytea用\x十六进制
+   */
+  static void appendCsvValue(StringBuilder row, Object value) {
+    if (value == null) {
+      return;
+    }
+    if (value instanceof BigDecimal) {
+      row.append(((BigDecimal) value).toPlainString());
+      return;
+    }
+    if (value instanceof Number || value instanceof Boolean) {
+      row.append(value);
+      return;
+    }
+    final String text;
+    if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      char[] hex = new char[bytes.length * 2 + 2];
+      hex[0] = '\\';
+      hex[1] = 'x';
+      for (int i = 0; i < bytes.length; i++) {
+        hex[i * 2 + 2] = HEX[(bytes[i] >> 4) & 0xf];
+        hex[i * 2 + 3] = HEX[bytes[i] & 0xf];
+      }
+      text = new String(hex);
+    } else {
+      text = value.toString();
+    }
+    row.append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"') {
+        row.append('"');
+      }
+      row.append(c);
+    }
+    row.append('"');
+  }
+
+  /**
+   * 驱动读到哪里才编码到哪里
+   */
+  private static class CsvRowReader extends Reader {
+
+    private final BulkLoadContext context;
+    private final Iterator<?> parameters;
+    private final String sql;
+    private StatementHandler next;
+    private final StringBuilder buffer = new StringBuilder();
+    private int position;
+
+    private CsvRowReader(BulkLoadContext context, StatementHandler first, Iterator<?> parameters) {
+      this.context = context;
+      this.parameters = parameters;
+      this.sql = first.getBoundSql().getSql();
+      this.next = first;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (position == buffer.length()) {
+        if (!encodeNextRow()) {
+          return -1;
+        }
+      }
+      int count = Math.min(length, buffer.length() - position);
+      buffer.getChars(position, position + count, chars, offset);
+      position += count;
+      return count;
+    }
+
+    private boolean encodeNextRow() throws IOException {
+      StatementHandler handler = next;
+      next = null;
+      if (handler == null) {
+        if (!parameters.hasNext()) {
+          return false;
+        }
+        handler = context.newStatementHandler(parameters.next());
+        if (!sql.equals(handler.getBoundSql().getSql())) {
+          throw new IOException("All rows of a COPY bulk load of " + context.getMappedStatement().getId() + " must produce the same sql.");
+        }
+      }
+      buffer.setLength(0);
+      position = 0;
+      Object[] values = context.encodeRow(handler);
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          buffer.append(',');
+        }
+        appendCsvValue(buffer, values[i]);
+      }
+      buffer.append('\n');
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
@@ -15,18 +15,26 @@
  */
 package org.apache.ibatis.executor.keygen;
 
+import java.lang.reflect.Array;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.Invoker;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
@@ -38,6 +46,9 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  */
 public class Jdbc3KeyGenerator implements KeyGenerator {
 
+  //按参数类型缓存的主键回填计划
+  private final ConcurrentMap<Class<?>, BeanKeyPlan> beanKeyPlans = new ConcurrentHashMap<Class<?>, BeanKeyPlan>();
+
   
   /**
    * 会在初始化BaseStatementHandler，PreparedStatementHandler的时候调用
@@ -79,23 +90,17 @@ public class Jdbc3KeyGenerator implements KeyGenerator {
        */
       rs = stmt.getGeneratedKeys();
       final Configuration configuration = ms.getConfiguration();
-      final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
       //获取主键字段名的数组,可能有多个主键
       final String[] keyProperties = ms.getKeyProperties();
       //获取此 ResultSet 对象的列的编号、类型和属性
       final ResultSetMetaData rsmd = rs.getMetaData();
-      
-      TypeHandler<?>[] typeHandlers = null;
       //如果属性名数组不为空,并且resultset返回值数>=主键的数量,
       if (keyProperties != null && rsmd.getColumnCount() >= keyProperties.length) {
-        for (Object parameter : parameters) {
-          if (!rs.next()) break; // there should be one row for each statement (also one for each parameter)
-          //利用parameter来构建MetaObject对象
-          final MetaObject metaParam = configuration.newMetaObject(parameter);
-          //遍历keyProperties获取它的type,再获取typehander,将所有的typehandler返回
-          if (typeHandlers == null) typeHandlers = getTypeHandlers(typeHandlerRegistry, metaParam, keyProperties);
-          //将从数据库获取的主键值value赋值到方法的参数里
-          populateKeys(rs, metaParam, keyProperties, typeHandlers);
+        final KeyPopulation population = new KeyPopulation(configuration, keyProperties);
+        for (int i = 0, n = parameters.size(); i < n; i++) {
+          if (!population.populate(rs, parameters.get(i))) {
+            break;
+          }
         }
       }
     } catch (Exception e) {
@@ -112,6 +117,154 @@ public class Jdbc3KeyGenerator implements KeyGenerator {
     }
   }
 
+  /**
+   * 普通JavaBean参数的主键回填计划,每个参数类型只计算一次,Map、集合、嵌套属性和自定义ObjectWrapper返回null,还是走MetaObject
+   */
+  private BeanKeyPlan beanKeyPlan(Configuration configuration, Class<?> type, String[] keyProperties) {
+    BeanKeyPlan plan = beanKeyPlans.get(type);
+    if (plan == null || plan.keyProperties != keyProperties) {
+      plan = BeanKeyPlan.build(configuration.getTypeHandlerRegistry(), type, keyProperties);
+      beanKeyPlans.put(type, plan);
+    }
+    return plan.setters == null ? null : plan;
+  }
+
+  /**
+   * sqlSession.insert(statement, list)会把List或数组包装成StrictMap(键为list或array,见DefaultSqlSession.wrapCollection),
+   * 这时主键按顺序回填到集合里的每个元素
+   */
+  private static Object getWrappedCollection(Object parameter) {
+    if (parameter instanceof DefaultSqlSession.StrictMap) {
+      Map<?, ?> map = (Map<?, ?>) parameter;
+      if (map.containsKey("list")) {
+        return map.get("list");
+      } else if (map.containsKey("array")) {
+        return map.get("array");
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 一次processBatch的状态,连续相同类型的参数直接重用上一个回填计划
+   */
+  private class KeyPopulation {
+
+    private final Configuration configuration;
+    private final String[] keyProperties;
+    private final Object[] args = new Object[1];
+    private Class<?> lastType;
+    private BeanKeyPlan lastPlan;
+    private TypeHandler<?>[] metaTypeHandlers;
+
+    private KeyPopulation(Configuration configuration, String[] keyProperties) {
+      this.configuration = configuration;
+      this.keyProperties = keyProperties;
+    }
+
+    /**
+     * @return false表示生成的主键已经读完
+     */
+    private boolean populate(ResultSet rs, Object parameter) throws Exception {
+      final Object collection = getWrappedCollection(parameter);
+      if (collection instanceof Collection) {
+        for (Object element : (Collection<?>) collection) {
+          if (!populateOne(rs, element)) {
+            return false;
+          }
+        }
+        return true;
+      } else if (collection != null && collection.getClass().isArray()) {
+        for (int i = 0, n = Array.getLength(collection); i < n; i++) {
+          if (!populateOne(rs, Array.get(collection, i))) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return populateOne(rs, parameter);
+    }
+
+    private boolean populateOne(ResultSet rs, Object parameter) throws Exception {
+      if (!rs.next()) {
+        return false; // there should be one row for each statement (also one for each parameter)
+      }
+      final BeanKeyPlan plan = planFor(parameter);
+      if (plan != null) {
+        plan.assign(rs, parameter, args);
+      } else {
+        //利用parameter来构建MetaObject对象
+        final MetaObject metaParam = configuration.newMetaObject(parameter);
+        //遍历keyProperties获取它的type,再获取typehander,将所有的typehandler返回
+        if (metaTypeHandlers == null) metaTypeHandlers = getTypeHandlers(configuration.getTypeHandlerRegistry(), metaParam, keyProperties);
+        //将从数据库获取的主键值value赋值到方法的参数里
+        populateKeys(rs, metaParam, keyProperties, metaTypeHandlers);
+      }
+      return true;
+    }
+
+    private BeanKeyPlan planFor(Object parameter) {
+      if (parameter == null || configuration.getObjectWrapperFactory().hasWrapperFor(parameter)) {
+        return null;
+      }
+      final Class<?> type = parameter.getClass();
+      if (type != lastType) {
+        lastPlan = beanKeyPlan(configuration, type, keyProperties);
+        lastType = type;
+      }
+      return lastPlan;
+    }
+  }
+
+  /**
+   * 主键列下标(第i个keyProperty读第i+1列) -> set方法的Invoker -> TypeHandler
+   */
+  private static final class BeanKeyPlan {
+
+    private final String[] keyProperties;
+    //null表示这个类型不能用计划回填
+    private final Invoker[] setters;
+    private final TypeHandler<?>[] typeHandlers;
+
+    private BeanKeyPlan(String[] keyProperties, Invoker[] setters, TypeHandler<?>[] typeHandlers) {
+      this.keyProperties = keyProperties;
+      this.setters = setters;
+      this.typeHandlers = typeHandlers;
+    }
+
+    private static BeanKeyPlan build(TypeHandlerRegistry typeHandlerRegistry, Class<?> type, String[] keyProperties) {
+      if (Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type) || type.isArray()) {
+        return new BeanKeyPlan(keyProperties, null, null);
+      }
+      final Reflector reflector = Reflector.forClass(type);
+      final Invoker[] setters = new Invoker[keyProperties.length];
+      final TypeHandler<?>[] typeHandlers = new TypeHandler<?>[keyProperties.length];
+      for (int i = 0; i < keyProperties.length; i++) {
+        final String property = keyProperties[i];
+        if (property.indexOf('.') >= 0 || property.indexOf('[') >= 0) {
+          return new BeanKeyPlan(keyProperties, null, null);
+        }
+        if (reflector.hasSetter(property)) {
+          TypeHandler<?> th = typeHandlerRegistry.getTypeHandler(reflector.getSetterType(property));
+          if (th != null) {
+            setters[i] = reflector.getSetInvoker(property);
+            typeHandlers[i] = th;
+          }
+        }
+      }
+      return new BeanKeyPlan(keyProperties, setters, typeHandlers);
+    }
+
+    private void assign(ResultSet rs, Object parameter, Object[] args) throws Exception {
+      for (int i = 0; i < setters.length; i++) {
+        if (setters[i] != null) {
+          args[0] = typeHandlers[i].getResult(rs, i + 1);
+          setters[i].invoke(parameter, args);
+        }
+      }
+    }
+  }
+
   
   /**
    * 遍历keyProperties获取它的type,再获取typehander,将所有的typehandler返回
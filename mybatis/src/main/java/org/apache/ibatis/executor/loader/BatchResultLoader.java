@@ -0,0 +1,116 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 懒加载时顺便把同一次查询里其他兄弟对象的同一个嵌套查询一起加载
+ * 第一次触发时用nestedQuery的batchSelect查出最多nestedSelectBatchSize个不同key的兄弟的结果,
+ * 之后兄弟对象再触发懒加载就直接使用已经查出来的结果,不再访问数据库
+ */
+public class BatchResultLoader extends ResultLoader {
+
+  private final Group group;
+  //group批量查出来的、属于这个loader的结果
+  private List<Object> preloaded;
+
+  public BatchResultLoader(Configuration config, Executor executor, MappedStatement mappedStatement, Object parameterObject, Class<?> targetType,
+      CacheKey cacheKey, BoundSql boundSql, Group group) {
+    super(config, executor, mappedStatement, parameterObject, targetType, cacheKey, boundSql);
+    this.group = group;
+    group.add(this);
+  }
+
+  @Override
+  public Object loadResult() throws SQLException {
+    List<Object> list = group.load(this);
+    resultObject = resultExtractor.extractObjectFromList(list, targetType);
+    return resultObject;
+  }
+
+  /**
+   * 一次父查询里同一个嵌套查询的所有懒加载
+   */
+  public static class Group {
+
+    private final NestedQueryBatch batch;
+    //还没有加载的loader,按normalizeKey以后的参数分组,参数相同的兄弟只占一个名额
+    private final Map<Object, List<BatchResultLoader>> pending = new LinkedHashMap<Object, List<BatchResultLoader>>();
+
+    public Group(MappedStatement nestedQuery, MappedStatement batchQuery) {
+      this.batch = new NestedQueryBatch(nestedQuery, batchQuery);
+    }
+
+    private synchronized void add(BatchResultLoader loader) {
+      Object key = NestedQueryBatch.normalizeKey(loader.parameterObject);
+      List<BatchResultLoader> loaders = pending.get(key);
+      if (loaders == null) {
+        loaders = new ArrayList<BatchResultLoader>();
+        pending.put(key, loaders);
+      }
+      loaders.add(loader);
+    }
+
+    private synchronized List<Object> load(BatchResultLoader trigger) throws SQLException {
+      if (trigger.preloaded == null) {
+        //触发的loader的key排在第一个,剩下的名额给还没有加载的兄弟的key
+        int batchSize = Math.max(1, trigger.configuration.getNestedSelectBatchSize());
+        Map<Object, List<BatchResultLoader>> chunk = new LinkedHashMap<Object, List<BatchResultLoader>>();
+        Object triggerKey = NestedQueryBatch.normalizeKey(trigger.parameterObject);
+        List<BatchResultLoader> triggerLoaders = pending.get(triggerKey);
+        if (triggerLoaders == null) {
+          triggerLoaders = new ArrayList<BatchResultLoader>();
+          triggerLoaders.add(trigger);
+        }
+        chunk.put(triggerKey, triggerLoaders);
+        for (Iterator<Map.Entry<Object, List<BatchResultLoader>>> it = pending.entrySet().iterator(); it.hasNext() && chunk.size() < batchSize;) {
+          Map.Entry<Object, List<BatchResultLoader>> entry = it.next();
+          if (!chunk.containsKey(entry.getKey())) {
+            chunk.put(entry.getKey(), entry.getValue());
+          }
+        }
+        List<Object> parameterObjects = new ArrayList<Object>(chunk.size());
+        for (List<BatchResultLoader> loaders : chunk.values()) {
+          parameterObjects.add(loaders.get(0).parameterObject);
+        }
+        List<Object> results = trigger.selectList(batch.getBatchQuery(), batch.wrapParameters(parameterObjects));
+        Map<Object, List<Object>> grouped = batch.groupByKey(trigger.configuration, results, parameterObjects);
+        for (Map.Entry<Object, List<BatchResultLoader>> entry : chunk.entrySet()) {
+          List<Object> list = grouped.get(entry.getKey());
+          for (BatchResultLoader loader : entry.getValue()) {
+            loader.preloaded = list != null ? list : new ArrayList<Object>();
+          }
+          //查询成功以后才移除,失败时兄弟们还可以在下一次触发时重新批量加载
+          pending.remove(entry.getKey());
+        }
+      }
+      return trigger.preloaded;
+    }
+  }
+
+}
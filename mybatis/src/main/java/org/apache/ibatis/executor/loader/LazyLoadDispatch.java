@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.reflection.property.PropertyNamer;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 懒加载代理的方法分派表
+ * 每个方法只在第一次被调用时计算一次:是不是writeReplace、会不会触发loadAll、对应哪个属性(已经转成ResultLoaderMap的大写key),
+ * 之后代理上的调用只需要一次Map查找,不再做PropertyNamer的字符串解析和lazyLoadTriggerMethods的查找
+ */
+public final class LazyLoadDispatch {
+
+  private static final String FINALIZE_METHOD = "finalize";
+  private static final String WRITE_REPLACE_METHOD = "writeReplace";
+
+  private static final Target NONE = new Target(Target.NONE, null);
+  private static final Target LOAD_ALL = new Target(Target.LOAD_ALL, null);
+  private static final Target WRITE_REPLACE = new Target(Target.WRITE_REPLACE, null);
+
+  private final boolean aggressive;
+  private final Set<String> lazyLoadTriggerMethods;
+  private final ConcurrentMap<Method, Target> targets = new ConcurrentHashMap<Method, Target>();
+
+  public LazyLoadDispatch(Configuration configuration) {
+    this.aggressive = configuration.isAggressiveLazyLoading();
+    this.lazyLoadTriggerMethods = configuration.getLazyLoadTriggerMethods();
+  }
+
+  public Target targetOf(Method method) {
+    Target target = targets.get(method);
+    if (target == null) {
+      target = resolve(method.getName());
+      targets.putIfAbsent(method, target);
+    }
+    return target;
+  }
+
+  private Target resolve(String methodName) {
+    if (WRITE_REPLACE_METHOD.equals(methodName)) {
+      return WRITE_REPLACE;
+    }
+    if (FINALIZE_METHOD.equals(methodName)) {
+      return NONE;
+    }
+    if (aggressive || lazyLoadTriggerMethods.contains(methodName)) {
+      return LOAD_ALL;
+    }
+    if (PropertyNamer.isProperty(methodName)) {
+      return new Target(Target.LOAD_PROPERTY, PropertyNamer.methodToProperty(methodName).toUpperCase(Locale.ENGLISH));
+    }
+    return NONE;
+  }
+
+  public static final class Target {
+
+    private static final int NONE = 0;
+    private static final int LOAD_ALL = 1;
+    private static final int LOAD_PROPERTY = 2;
+    private static final int WRITE_REPLACE = 3;
+
+    private final int kind;
+    private final String propertyKey;
+
+    private Target(int kind, String propertyKey) {
+      this.kind = kind;
+      this.propertyKey = propertyKey;
+    }
+
+    public boolean isWriteReplace() {
+      return kind == WRITE_REPLACE;
+    }
+
+    public boolean isLoadAll() {
+      return kind == LOAD_ALL;
+    }
+
+    public boolean triggersLoad() {
+      return kind == LOAD_ALL || kind == LOAD_PROPERTY;
+    }
+
+    public String getPropertyKey() {
+      return propertyKey;
+    }
+  }
+
+}
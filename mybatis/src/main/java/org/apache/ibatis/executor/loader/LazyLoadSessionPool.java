@@ -0,0 +1,274 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+
+/**
+ * 创建会话已经关闭或者在其他线程上触发的懒加载共用的executor池
+ * 最多同时打开lazyLoadPoolMaximumSessions个会话(也就是最多占用这么多连接),超过时等待;
+ * 会话用REUSE executor,连续的懒加载可以复用连接和prepared statement,
+ * 空闲超过lazyLoadPoolIdleTimeout毫秒后关闭,把连接还给数据源;
+ * 不再使用时调用close(一般通过Configuration.close)关闭所有会话
+ */
+public class LazyLoadSessionPool {
+
+  private static ScheduledExecutorService evictor;
+
+  private final Configuration configuration;
+  private final LinkedList<Session> idleSessions = new LinkedList<Session>();
+  //每次懒加载都要查,用并发map避免所有懒加载争同一把锁;Transaction的实现不重写equals,按对象区分
+  private final Map<Transaction, Session> sessions = new ConcurrentHashMap<Transaction, Session>();
+  //当前线程正在使用的会话,在池里的会话上触发的嵌套加载直接重用,避免等待自己
+  private final ThreadLocal<Session> currentSession = new ThreadLocal<Session>();
+  private int openSessions;
+  private boolean evictionScheduled;
+  private boolean closed;
+
+  public LazyLoadSessionPool(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  public <E> List<E> query(MappedStatement ms, Object parameter, CacheKey key, BoundSql boundSql) throws SQLException {
+    Session session = checkout();
+    boolean success = false;
+    try {
+      List<E> list = session.executor.<E> query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, key, boundSql);
+      success = true;
+      return list;
+    } finally {
+      release(session, success);
+    }
+  }
+
+  public <E> List<E> query(MappedStatement ms, Object parameter) throws SQLException {
+    Session session = checkout();
+    boolean success = false;
+    try {
+      List<E> list = session.executor.<E> query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      success = true;
+      return list;
+    } finally {
+      release(session, success);
+    }
+  }
+
+  /**
+   * 池里的会话查出来的对象,在会话归还以后懒加载也必须重新从池里取会话,不能直接使用创建时的executor
+   * @return executor属于池里的会话,并且当前线程没有在使用这个会话
+   */
+  public boolean isPooledElsewhere(Executor executor) {
+    Session session = sessions.get(executor.getTransaction());
+    return session != null && session != currentSession.get();
+  }
+
+  /**
+   * 关闭所有空闲的会话,正在使用的会话在归还时关闭;关闭以后不能再从池里取会话
+   */
+  public void close() {
+    List<Session> closing;
+    synchronized (this) {
+      closed = true;
+      closing = new ArrayList<Session>(idleSessions);
+      idleSessions.clear();
+      openSessions -= closing.size();
+      notifyAll();
+    }
+    for (Session session : closing) {
+      closeSession(session, false);
+    }
+  }
+
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  private Session checkout() throws SQLException {
+    Session current = currentSession.get();
+    if (current != null) {
+      current.depth++;
+      return current;
+    }
+    synchronized (this) {
+      while (true) {
+        if (closed) {
+          throw new ExecutorException("ResultLoader could not load lazily.  The lazy load session pool was closed.");
+        }
+        //后进先出,最近用过的会话statement缓存最完整
+        if (!idleSessions.isEmpty()) {
+          Session session = idleSessions.removeLast();
+          session.depth = 1;
+          currentSession.set(session);
+          return session;
+        }
+        if (openSessions < Math.max(1, configuration.getLazyLoadPoolMaximumSessions())) {
+          openSessions++;
+          break;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ExecutorException("Interrupted while waiting for a lazy load session.", e);
+        }
+      }
+    }
+    try {
+      Session session = openSession();
+      sessions.put(session.transaction, session);
+      session.depth = 1;
+      currentSession.set(session);
+      return session;
+    } catch (RuntimeException e) {
+      sessionClosed();
+      throw e;
+    } catch (SQLException e) {
+      sessionClosed();
+      throw e;
+    }
+  }
+
+  private void release(Session session, boolean success) {
+    if (--session.depth > 0) {
+      return;
+    }
+    currentSession.remove();
+    if (!success) {
+      closeSession(session, true);
+      sessionClosed();
+      return;
+    }
+    //不同的懒加载之间不能共享一级缓存
+    session.executor.clearLocalCache();
+    session.lastUsed = System.currentTimeMillis();
+    synchronized (this) {
+      if (!closed) {
+        idleSessions.add(session);
+        notifyAll();
+        scheduleEviction();
+        return;
+      }
+    }
+    closeSession(session, false);
+    sessionClosed();
+  }
+
+  private synchronized void sessionClosed() {
+    openSessions--;
+    notifyAll();
+  }
+
+  private Session openSession() throws SQLException {
+    final Environment environment = configuration.getEnvironment();
+    if (environment == null) throw new ExecutorException("ResultLoader could not load lazily.  Environment was not configured.");
+    final DataSource ds = environment.getDataSource();
+    if (ds == null) throw new ExecutorException("ResultLoader could not load lazily.  DataSource was not configured.");
+    final TransactionFactory transactionFactory = environment.getTransactionFactory();
+    //autoCommit,会话空闲期间不会一直持有事务
+    final Transaction tx = transactionFactory.newTransaction(ds, null, true);
+    return new Session(tx, configuration.newExecutor(tx, ExecutorType.REUSE));
+  }
+
+  private void closeSession(Session session, boolean forceRollback) {
+    sessions.remove(session.transaction);
+    session.executor.close(forceRollback);
+  }
+
+  private void scheduleEviction() {
+    if (!evictionScheduled) {
+      evictionScheduled = true;
+      getEvictor().schedule(new Runnable() {
+        public void run() {
+          evictIdleSessions();
+        }
+      }, configuration.getLazyLoadPoolIdleTimeout(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void evictIdleSessions() {
+    List<Session> evicted = new ArrayList<Session>();
+    synchronized (this) {
+      evictionScheduled = false;
+      long expiry = System.currentTimeMillis() - configuration.getLazyLoadPoolIdleTimeout();
+      for (Iterator<Session> it = idleSessions.iterator(); it.hasNext();) {
+        Session session = it.next();
+        if (session.lastUsed <= expiry) {
+          it.remove();
+          evicted.add(session);
+        }
+      }
+      openSessions -= evicted.size();
+      if (!idleSessions.isEmpty()) {
+        scheduleEviction();
+      }
+      notifyAll();
+    }
+    for (Session session : evicted) {
+      closeSession(session, false);
+    }
+  }
+
+  private static synchronized ScheduledExecutorService getEvictor() {
+    if (evictor == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "mybatis-lazy-load-evictor");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      evictor = executor;
+    }
+    return evictor;
+  }
+
+  private static class Session {
+    private final Transaction transaction;
+    private final Executor executor;
+    private long lastUsed;
+    private int depth;
+
+    private Session(Transaction transaction, Executor executor) {
+      this.transaction = transaction;
+      this.executor = executor;
+    }
+  }
+
+}
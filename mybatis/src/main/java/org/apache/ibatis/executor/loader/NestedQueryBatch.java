@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 一个结果集里同一个嵌套查询(association/collection select=...)需要的所有key
+ * 结果集处理完以后由Executor.loadBatch用nestedQuery的batchSelect一次查出来,
+ * 按batchKeyProperty分组放进一级缓存,再由deferLoad填充到各个父对象上
+ */
+public class NestedQueryBatch {
+
+  private final MappedStatement nestedQuery;
+  private final MappedStatement batchQuery;
+  //cachekey是单个嵌套查询的key,value是单个嵌套查询的参数
+  private final Map<CacheKey, Object> parameters = new LinkedHashMap<CacheKey, Object>();
+
+  public NestedQueryBatch(MappedStatement nestedQuery, MappedStatement batchQuery) {
+    this.nestedQuery = nestedQuery;
+    this.batchQuery = batchQuery;
+  }
+
+  public void addKey(CacheKey key, Object parameterObject) {
+    if (!parameters.containsKey(key)) {
+      parameters.put(key, parameterObject);
+    }
+  }
+
+  public MappedStatement getNestedQuery() {
+    return nestedQuery;
+  }
+
+  public MappedStatement getBatchQuery() {
+    return batchQuery;
+  }
+
+  public Map<CacheKey, Object> getParameters() {
+    return parameters;
+  }
+
+  /**
+   * batchSelect的参数,和SqlSession传入list时一样可以用list或collection引用
+   */
+  public Object wrapParameters(List<Object> parameterObjects) {
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("list", parameterObjects);
+    map.put("collection", parameterObjects);
+    return map;
+  }
+
+  /**
+   * 按batchKeyProperty把batchSelect的结果分组,结果的key先转换成参数的类型(数字统一精度,字符串和数字互相转换)
+   * @param parameterObjects 这次batchSelect的参数
+   * @throws ExecutorException 查出了结果但是没有一个能对应到参数上,通常是batchKeyProperty配错了
+   */
+  public Map<Object, List<Object>> groupByKey(Configuration configuration, List<Object> results, List<Object> parameterObjects) {
+    String keyProperty = nestedQuery.getBatchKeyProperty();
+    Object sampleKey = null;
+    for (Object parameterObject : parameterObjects) {
+      if (parameterObject != null) {
+        sampleKey = normalizeKey(parameterObject);
+        break;
+      }
+    }
+    Map<Object, List<Object>> grouped = new HashMap<Object, List<Object>>();
+    for (Object result : results) {
+      MetaObject metaObject = configuration.newMetaObject(result);
+      Object key = convertKey(normalizeKey(metaObject.getValue(keyProperty)), sampleKey);
+      List<Object> list = grouped.get(key);
+      if (list == null) {
+        list = new ArrayList<Object>();
+        grouped.put(key, list);
+      }
+      list.add(result);
+    }
+    if (!grouped.isEmpty()) {
+      for (Object parameterObject : parameterObjects) {
+        if (grouped.containsKey(normalizeKey(parameterObject))) {
+          return grouped;
+        }
+      }
+      throw new ExecutorException("None of the " + results.size() + " rows of " + batchQuery.getId() + " matched a parameter of "
+          + nestedQuery.getId() + " by property '" + keyProperty + "' (found keys " + grouped.keySet() + ", parameters " + parameterObjects
+          + "). Check that batchKeyProperty holds the parameter of the nested select.");
+    }
+    return grouped;
+  }
+
+  /**
+   * 参数和结果属性的数字类型可能不一样(比如Integer和Long,Oracle NUMBER读出来的BigDecimal),
+   * 整数值统一成Long,其他数字统一成去掉末尾0的BigDecimal
+   */
+  public static Object normalizeKey(Object key) {
+    if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+      return Long.valueOf(((Number) key).longValue());
+    }
+    if (key instanceof BigInteger) {
+      BigInteger value = (BigInteger) key;
+      return value.bitLength() < 64 ? (Object) Long.valueOf(value.longValue()) : new BigDecimal(value);
+    }
+    if (key instanceof Double || key instanceof Float) {
+      double value = ((Number) key).doubleValue();
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        return key;
+      }
+      return normalizeDecimal(new BigDecimal(key.toString()));
+    }
+    if (key instanceof BigDecimal) {
+      return normalizeDecimal((BigDecimal) key);
+    }
+    return key;
+  }
+
+  private static Object normalizeDecimal(BigDecimal value) {
+    if (value.signum() == 0) {
+      return Long.valueOf(0);
+    }
+    BigDecimal stripped = value.stripTrailingZeros();
+    if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() <= 18) {
+      return Long.valueOf(stripped.longValue());
+    }
+    return stripped;
+  }
+
+  /**
+   * 结果的key和参数一个是数字一个是字符串时,转换成参数的类型
+   */
+  private static Object convertKey(Object key, Object sampleKey) {
+    if (key == null || sampleKey == null || sampleKey.getClass().isInstance(key)) {
+      return key;
+    }
+    if (sampleKey instanceof String) {
+      return key instanceof BigDecimal ? ((BigDecimal) key).toPlainString() : key.toString();
+    }
+    if ((sampleKey instanceof Long || sampleKey instanceof BigDecimal) && key instanceof String) {
+      try {
+        return normalizeKey(new BigDecimal(((String) key).trim()));
+      } catch (NumberFormatException e) {
+        return key;
+      }
+    }
+    return key;
+  }
+
+}
@@ -73,10 +73,10 @@ public class ResultLoader {
   }
 
   private <E> List<E> selectList() throws SQLException {
-    Executor localExecutor = executor;
-    if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
-      localExecutor = newExecutor();
+    if (useSessionPool()) {
+      return configuration.getLazyLoadSessionPool().<E> query(mappedStatement, parameterObject, cacheKey, boundSql);
     }
+    Executor localExecutor = localExecutor();
     try {
       return localExecutor.<E> query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
     } finally {
@@ -86,6 +86,44 @@ public class ResultLoader {
     }
   }
 
+  /**
+   * 和selectList用同样的方式选择executor,执行另外一个statement(比如批量加载兄弟对象)
+   */
+  protected <E> List<E> selectList(MappedStatement statement, Object parameter) throws SQLException {
+    if (useSessionPool()) {
+      return configuration.getLazyLoadSessionPool().<E> query(statement, parameter);
+    }
+    Executor localExecutor = localExecutor();
+    try {
+      return localExecutor.<E> query(statement, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    } finally {
+      if (localExecutor != executor) {
+        localExecutor.close(false);
+      }
+    }
+  }
+
+  private Executor localExecutor() throws SQLException {
+    if (isDetached()) {
+      return newExecutor();
+    }
+    return executor;
+  }
+
+  private boolean isDetached() {
+    return Thread.currentThread().getId() != this.creatorThreadId || executor.isClosed();
+  }
+
+  /**
+   * 开启了lazyLoadPoolMaximumSessions时,不能使用创建时的executor的懒加载都交给共享的会话池
+   */
+  private boolean useSessionPool() {
+    if (configuration.getLazyLoadPoolMaximumSessions() <= 0) {
+      return false;
+    }
+    return isDetached() || configuration.getLazyLoadSessionPool().isPooledElsewhere(executor);
+  }
+
   private Executor newExecutor() throws SQLException {
     final Environment environment = configuration.getEnvironment();
     if (environment == null) throw new ExecutorException("ResultLoader could not load lazily.  Environment was not configured.");
@@ -28,6 +28,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BaseExecutor;
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.executor.ExecutorException;
@@ -48,6 +49,8 @@ public class ResultLoaderMap {
   
  //将至今没有加载的属性以   属性名(大写)-loadPair   的形式放到map里边
   private final Map<String, LoadPair> loaderMap = new HashMap<String, LoadPair>();
+  //loaderMap的大小,代理不加锁就能判断是否已经全部加载完
+  private volatile int pendingLoaders;
 
   
   /**
@@ -67,6 +70,7 @@ public class ResultLoaderMap {
     }
     
     loaderMap.put(upperFirst, new LoadPair(property, metaResultObject, resultLoader));
+    pendingLoaders = loaderMap.size();
   }
 
   public final Map<String, LoadPair> getProperties() {
@@ -81,17 +85,29 @@ public class ResultLoaderMap {
     return loaderMap.size();
   }
 
+  /**
+   * 不需要持有锁,属性都加载完以后代理可以直接跳过同步
+   */
+  public boolean hasPendingLoaders() {
+    return pendingLoaders > 0;
+  }
+
   public boolean hasLoader(String property) {
     return loaderMap.containsKey(property.toUpperCase(Locale.ENGLISH));
   }
 
   public boolean load(String property) throws SQLException {
     LoadPair pair = loaderMap.remove(property.toUpperCase(Locale.ENGLISH));
-    if (pair != null) {
-      pair.load();
-      return true;
+    try {
+      if (pair != null) {
+        pair.load();
+        return true;
+      }
+      return false;
+    } finally {
+      //属性设置完以后才更新,否则其他线程会跳过同步块读到还没加载的属性
+      pendingLoaders = loaderMap.size();
     }
-    return false;
   }
 
   public void loadAll() throws SQLException {
@@ -323,5 +339,10 @@ public class ResultLoaderMap {
     protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
       throw new UnsupportedOperationException("Not supported.");
     }
+
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+      throw new UnsupportedOperationException("Not supported.");
+    }
   }
 }
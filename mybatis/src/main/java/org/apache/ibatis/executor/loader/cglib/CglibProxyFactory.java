@@ -19,7 +19,6 @@ import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 
 import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
@@ -28,6 +27,7 @@ import net.sf.cglib.proxy.MethodProxy;
 
 import org.apache.ibatis.executor.loader.AbstractEnhancedDeserializationProxy;
 import org.apache.ibatis.executor.loader.AbstractSerialStateHolder;
+import org.apache.ibatis.executor.loader.LazyLoadDispatch;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.loader.WriteReplaceInterface;
@@ -37,7 +37,6 @@ import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.reflection.ExceptionUtil;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.property.PropertyCopier;
-import org.apache.ibatis.reflection.property.PropertyNamer;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -46,7 +45,6 @@ import org.apache.ibatis.session.Configuration;
 public class CglibProxyFactory implements ProxyFactory {
 
   private static final Log log = LogFactory.getLog(CglibProxyFactory.class);
-  private static final String FINALIZE_METHOD = "finalize";
   private static final String WRITE_REPLACE_METHOD = "writeReplace";
 
   
@@ -131,8 +129,8 @@ public class CglibProxyFactory implements ProxyFactory {
 	//要代理的对象类型
     private Class<?> type;
     private ResultLoaderMap lazyLoader;
-    private boolean aggressive;
-    private Set<String> lazyLoadTriggerMethods;
+    //方法分派表,决定每个方法是否触发加载
+    private LazyLoadDispatch dispatch;
     private ObjectFactory objectFactory;
     private List<Class<?>> constructorArgTypes;
     private List<Object> constructorArgs;
@@ -151,10 +149,8 @@ public class CglibProxyFactory implements ProxyFactory {
     	//要代理的对象类型
       this.type = type;
       this.lazyLoader = lazyLoader;
-      //是否懒加载aggressive，默认为true
-      this.aggressive = configuration.isAggressiveLazyLoading();
-      //懒加载触发方法  "equals", "clone", "hashCode", "toString" 
-      this.lazyLoadTriggerMethods = configuration.getLazyLoadTriggerMethods();
+      //aggressive和懒加载触发方法  "equals", "clone", "hashCode", "toString" 已经计算到分派表里
+      this.dispatch = configuration.getLazyLoadDispatch();
       //objectFactory用来初始化对象
       this.objectFactory = objectFactory;
       //type的有参构造函数的参数类型和参数名
@@ -192,13 +188,11 @@ public class CglibProxyFactory implements ProxyFactory {
      * cglib拦截器实现
      */
     public Object intercept(Object enhanced, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
-      final String methodName = method.getName();
+      final LazyLoadDispatch.Target target = dispatch.targetOf(method);
       try {
-        synchronized (lazyLoader) {
-        	
-          if (WRITE_REPLACE_METHOD.equals(methodName)) {
-        	  
-        	//要代理的对象类型对象初始化
+        if (target.isWriteReplace()) {
+          synchronized (lazyLoader) {
+            //要代理的对象类型对象初始化
             Object original = null;
             //有参数初始化
             if (constructorArgTypes.isEmpty()) {
@@ -215,19 +209,15 @@ public class CglibProxyFactory implements ProxyFactory {
             } else {
               return original;
             }
-          } else {
-            if (lazyLoader.size() > 0 && !FINALIZE_METHOD.equals(methodName)) {
-              if (aggressive || lazyLoadTriggerMethods.contains(methodName)) {
-                //lazyLoader.loadAll 就会触发ResultLoader的loadResult方法完成数据的加载实现。
-                lazyLoader.loadAll();
-              } else if (PropertyNamer.isProperty(methodName)) {
-            	 //将get或set方法名获取property字段名
-                final String property = PropertyNamer.methodToProperty(methodName);
-                
-                if (lazyLoader.hasLoader(property)) {
-                  lazyLoader.load(property);
-                }
-              }
+          }
+        } else if (target.triggersLoad() && lazyLoader.hasPendingLoaders()) {
+          //属性都加载完以后不再进入同步块
+          synchronized (lazyLoader) {
+            if (target.isLoadAll()) {
+              //lazyLoader.loadAll 就会触发ResultLoader的loadResult方法完成数据的加载实现。
+              lazyLoader.loadAll();
+            } else {
+              lazyLoader.load(target.getPropertyKey());
             }
           }
         }
@@ -19,7 +19,6 @@ import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 
 import javassist.util.proxy.MethodHandler;
 import javassist.util.proxy.Proxy;
@@ -28,6 +27,7 @@ import javassist.util.proxy.ProxyFactory;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.loader.AbstractEnhancedDeserializationProxy;
 import org.apache.ibatis.executor.loader.AbstractSerialStateHolder;
+import org.apache.ibatis.executor.loader.LazyLoadDispatch;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.loader.WriteReplaceInterface;
 import org.apache.ibatis.io.Resources;
@@ -36,7 +36,6 @@ import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.reflection.ExceptionUtil;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.property.PropertyCopier;
-import org.apache.ibatis.reflection.property.PropertyNamer;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -45,7 +44,6 @@ import org.apache.ibatis.session.Configuration;
 public class JavassistProxyFactory implements org.apache.ibatis.executor.loader.ProxyFactory {
 
   private static final Log log = LogFactory.getLog(JavassistProxyFactory.class);
-  private static final String FINALIZE_METHOD = "finalize";
   private static final String WRITE_REPLACE_METHOD = "writeReplace";
 
   public JavassistProxyFactory() {
@@ -98,8 +96,7 @@ public class JavassistProxyFactory implements org.apache.ibatis.executor.loader.
 
     private Class<?> type;
     private ResultLoaderMap lazyLoader;
-    private boolean aggressive;
-    private Set<String> lazyLoadTriggerMethods;
+    private LazyLoadDispatch dispatch;
     private ObjectFactory objectFactory;
     private List<Class<?>> constructorArgTypes;
     private List<Object> constructorArgs;
@@ -107,8 +104,7 @@ public class JavassistProxyFactory implements org.apache.ibatis.executor.loader.
     private EnhancedResultObjectProxyImpl(Class<?> type, ResultLoaderMap lazyLoader, Configuration configuration, ObjectFactory objectFactory, List<Class<?>> constructorArgTypes, List<Object> constructorArgs) {
       this.type = type;
       this.lazyLoader = lazyLoader;
-      this.aggressive = configuration.isAggressiveLazyLoading();
-      this.lazyLoadTriggerMethods = configuration.getLazyLoadTriggerMethods();
+      this.dispatch = configuration.getLazyLoadDispatch();
       this.objectFactory = objectFactory;
       this.constructorArgTypes = constructorArgTypes;
       this.constructorArgs = constructorArgs;
@@ -123,10 +119,10 @@ public class JavassistProxyFactory implements org.apache.ibatis.executor.loader.
     }
 
     public Object invoke(Object enhanced, Method method, Method methodProxy, Object[] args) throws Throwable {
-      final String methodName = method.getName();
+      final LazyLoadDispatch.Target target = dispatch.targetOf(method);
       try {
-        synchronized (lazyLoader) {
-          if (WRITE_REPLACE_METHOD.equals(methodName)) {
+        if (target.isWriteReplace()) {
+          synchronized (lazyLoader) {
             Object original = null;
             if (constructorArgTypes.isEmpty()) {
               original = objectFactory.create(type);
@@ -139,16 +135,13 @@ public class JavassistProxyFactory implements org.apache.ibatis.executor.loader.
             } else {
               return original;
             }
-          } else {
-            if (lazyLoader.size() > 0 && !FINALIZE_METHOD.equals(methodName)) {
-              if (aggressive || lazyLoadTriggerMethods.contains(methodName)) {
-                lazyLoader.loadAll();
-              } else if (PropertyNamer.isProperty(methodName)) {
-                final String property = PropertyNamer.methodToProperty(methodName);
-                if (lazyLoader.hasLoader(property)) {
-                  lazyLoader.load(property);
-                }
-              }
+          }
+        } else if (target.triggersLoad() && lazyLoader.hasPendingLoaders()) {
+          synchronized (lazyLoader) {
+            if (target.isLoadAll()) {
+              lazyLoader.loadAll();
+            } else {
+              lazyLoader.load(target.getPropertyKey());
             }
           }
         }
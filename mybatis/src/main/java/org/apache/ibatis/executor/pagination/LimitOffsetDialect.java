@@ -0,0 +1,37 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.pagination;
+
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * select ... LIMIT n OFFSET m
+ * mysql, mariadb, postgresql, hsqldb, h2, sqlite
+ */
+public class LimitOffsetDialect implements PaginationDialect {
+
+  public String getPagedSql(String sql, int offset, int limit) {
+    StringBuilder pagedSql = new StringBuilder(sql.length() + 40);
+    pagedSql.append(PaginationSupport.trimTrailing(sql));
+    //mysql不支持单独的OFFSET,所以limit总是要写上
+    pagedSql.append(" LIMIT ").append(limit);
+    if (offset > RowBounds.NO_ROW_OFFSET) {
+      pagedSql.append(" OFFSET ").append(offset);
+    }
+    return pagedSql.toString();
+  }
+
+}
@@ -0,0 +1,36 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.pagination;
+
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * SQL:2008标准写法 select ... OFFSET m ROWS FETCH NEXT n ROWS ONLY
+ * derby, db2, oracle 12c; sql server要求有order by,用SqlServerDialect
+ */
+public class OffsetFetchDialect implements PaginationDialect {
+
+  public String getPagedSql(String sql, int offset, int limit) {
+    StringBuilder pagedSql = new StringBuilder(sql.length() + 50);
+    pagedSql.append(PaginationSupport.trimTrailing(sql));
+    pagedSql.append(" OFFSET ").append(offset).append(" ROWS");
+    if (limit < RowBounds.NO_ROW_LIMIT) {
+      pagedSql.append(" FETCH NEXT ").append(limit).append(" ROWS ONLY");
+    }
+    return pagedSql.toString();
+  }
+
+}
@@ -0,0 +1,31 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.pagination;
+
+/**
+ * 把offset/limit改写进sql,让数据库只返回需要的那一页,而不是在客户端用rs.next()跳过前面的行
+ */
+public interface PaginationDialect {
+
+  /**
+   * @param sql    原始的select语句
+   * @param offset 跳过的行数,RowBounds.NO_ROW_OFFSET表示不跳过
+   * @param limit  返回的最大行数,RowBounds.NO_ROW_LIMIT表示不限制
+   * @return 分页后的sql
+   */
+  String getPagedSql(String sql, int offset, int limit);
+
+}
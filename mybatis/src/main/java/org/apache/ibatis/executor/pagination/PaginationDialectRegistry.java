@@ -0,0 +1,63 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.pagination;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * databaseId到PaginationDialect的映射
+ * databaseId一般是VendorDatabaseIdProvider里配置的别名,这里预先注册了常见数据库的名字
+ */
+public class PaginationDialectRegistry {
+
+  private final Map<String, PaginationDialect> dialects = new HashMap<String, PaginationDialect>();
+
+  public PaginationDialectRegistry() {
+    PaginationDialect limitOffset = new LimitOffsetDialect();
+    register("mysql", limitOffset);
+    register("mariadb", limitOffset);
+    register("postgresql", limitOffset);
+    register("hsqldb", limitOffset);
+    register("h2", limitOffset);
+    register("sqlite", limitOffset);
+
+    PaginationDialect offsetFetch = new OffsetFetchDialect();
+    register("derby", offsetFetch);
+    register("db2", offsetFetch);
+
+    register("sqlserver", new SqlServerDialect());
+
+    register("oracle", new RowNumDialect());
+  }
+
+  public void register(String databaseId, PaginationDialect dialect) {
+    dialects.put(databaseId.toLowerCase(Locale.ENGLISH), dialect);
+  }
+
+  /**
+   * @param databaseId
+   * @return 没有对应的dialect时返回null,这时RowBounds还是在客户端处理
+   */
+  public PaginationDialect getDialect(String databaseId) {
+    if (databaseId == null) {
+      return null;
+    }
+    return dialects.get(databaseId.toLowerCase(Locale.ENGLISH));
+  }
+
+}
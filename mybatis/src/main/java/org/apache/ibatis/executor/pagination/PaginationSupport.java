@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.pagination;
+
+/**
+ * 各个dialect改写sql时共用的方法
+ */
+public final class PaginationSupport {
+
+  private PaginationSupport() {
+  }
+
+  /**
+   * 去掉sql末尾的空白和分号,注解里的sql末尾会带一个空格,xml里的sql可能以分号结束
+   * @param sql
+   * @return
+   */
+  public static String trimTrailing(String sql) {
+    int end = sql.length();
+    while (end > 0 && (Character.isWhitespace(sql.charAt(end - 1)) || sql.charAt(end - 1) == ';')) {
+      end--;
+    }
+    return sql.substring(0, end);
+  }
+
+  /**
+   * 判断sql的最外层有没有order by,括号里的子查询、字符串和带引号的标识符里的order by不算
+   * @param sql
+   * @return
+   */
+  public static boolean hasTopLevelOrderBy(String sql) {
+    int depth = 0;
+    char quote = 0;
+    for (int i = 0, n = sql.length(); i < n; i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '[') {
+        quote = ']';
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (depth == 0 && (c == 'o' || c == 'O') && isKeyword(sql, i, "order") && isKeyword(sql, skipWhitespace(sql, i + 5), "by")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isKeyword(String sql, int start, String keyword) {
+    int end = start + keyword.length();
+    return end <= sql.length()
+        && sql.regionMatches(true, start, keyword, 0, keyword.length())
+        && (start == 0 || !isIdentifierPart(sql.charAt(start - 1)))
+        && (end == sql.length() || !isIdentifierPart(sql.charAt(end)));
+  }
+
+  private static int skipWhitespace(String sql, int start) {
+    int i = start;
+    while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+  }
+
+}
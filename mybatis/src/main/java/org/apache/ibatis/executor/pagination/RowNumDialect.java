@@ -0,0 +1,38 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.pagination;
+
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * oracle 12c之前的rownum写法,结果里会多出一列pg_rn_,自动映射时会被忽略
+ */
+public class RowNumDialect implements PaginationDialect {
+
+  public String getPagedSql(String sql, int offset, int limit) {
+    long endRow = (long) offset + limit;
+    StringBuilder pagedSql = new StringBuilder(sql.length() + 120);
+    pagedSql.append("select * from ( select pg_.*, rownum pg_rn_ from ( ");
+    pagedSql.append(PaginationSupport.trimTrailing(sql));
+    pagedSql.append(" ) pg_");
+    if (limit < RowBounds.NO_ROW_LIMIT) {
+      pagedSql.append(" where rownum <= ").append(endRow);
+    }
+    pagedSql.append(" ) where pg_rn_ > ").append(offset);
+    return pagedSql.toString();
+  }
+
+}
@@ -0,0 +1,33 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.pagination;
+
+/**
+ * sql server 2012以上的OFFSET/FETCH写法
+ * sql server要求OFFSET前面必须有order by,原sql最外层没有order by时补上ORDER BY (SELECT NULL),顺序由数据库决定
+ */
+public class SqlServerDialect extends OffsetFetchDialect {
+
+  @Override
+  public String getPagedSql(String sql, int offset, int limit) {
+    String trimmed = PaginationSupport.trimTrailing(sql);
+    if (!PaginationSupport.hasTopLevelOrderBy(trimmed)) {
+      trimmed = trimmed + " ORDER BY (SELECT NULL)";
+    }
+    return super.getPagedSql(trimmed, offset, limit);
+  }
+
+}
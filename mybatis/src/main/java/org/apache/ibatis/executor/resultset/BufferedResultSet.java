@@ -0,0 +1,370 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 把resultset的行先全部读到内存里,再以ResultSet代理的形式交给其他线程做对象映射
+ * 读取必须在jdbc线程上完成(getMoreResults会关闭当前的resultset),映射可以放到别的线程
+ * lob/array/ref之类依赖数据库连接的列不能缓存,见isBufferable
+ */
+final class BufferedResultSet {
+
+  private static final Set<Integer> UNBUFFERABLE_TYPES = new HashSet<Integer>();
+  private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = new HashMap<Class<?>, Object>();
+
+  static {
+    UNBUFFERABLE_TYPES.add(Types.BLOB);
+    UNBUFFERABLE_TYPES.add(Types.CLOB);
+    UNBUFFERABLE_TYPES.add(Types.NCLOB);
+    UNBUFFERABLE_TYPES.add(Types.ARRAY);
+    UNBUFFERABLE_TYPES.add(Types.STRUCT);
+    UNBUFFERABLE_TYPES.add(Types.REF);
+    UNBUFFERABLE_TYPES.add(Types.DATALINK);
+    UNBUFFERABLE_TYPES.add(Types.SQLXML);
+
+    PRIMITIVE_DEFAULTS.put(boolean.class, Boolean.FALSE);
+    PRIMITIVE_DEFAULTS.put(byte.class, Byte.valueOf((byte) 0));
+    PRIMITIVE_DEFAULTS.put(short.class, Short.valueOf((short) 0));
+    PRIMITIVE_DEFAULTS.put(int.class, Integer.valueOf(0));
+    PRIMITIVE_DEFAULTS.put(long.class, Long.valueOf(0L));
+    PRIMITIVE_DEFAULTS.put(float.class, Float.valueOf(0f));
+    PRIMITIVE_DEFAULTS.put(double.class, Double.valueOf(0d));
+  }
+
+  private final ResultSetMetaData metaData;
+  private final Map<String, Integer> columnIndexes;
+  private final List<Object[]> rows;
+
+  private BufferedResultSet(ResultSetMetaData metaData, Map<String, Integer> columnIndexes, List<Object[]> rows) {
+    this.metaData = metaData;
+    this.columnIndexes = columnIndexes;
+    this.rows = rows;
+  }
+
+  /**
+   * 判断resultset的所有列是否都能安全地缓存
+   */
+  static boolean isBufferable(ResultSet rs) throws SQLException {
+    ResultSetMetaData rsmd = rs.getMetaData();
+    int columnCount = rsmd.getColumnCount();
+    for (int i = 1; i <= columnCount; i++) {
+      if (UNBUFFERABLE_TYPES.contains(rsmd.getColumnType(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 从rs的当前位置开始最多读取limit行,调用方负责跳过offset和关闭rs
+   */
+  static BufferedResultSet buffer(ResultSet rs, int limit) throws SQLException {
+    ResultSetMetaData rsmd = rs.getMetaData();
+    int columnCount = rsmd.getColumnCount();
+    int[] types = new int[columnCount];
+    Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+    for (int i = 1; i <= columnCount; i++) {
+      types[i - 1] = rsmd.getColumnType(i);
+      String label = rsmd.getColumnLabel(i).toUpperCase(Locale.ENGLISH);
+      if (!columnIndexes.containsKey(label)) {
+        columnIndexes.put(label, i);
+      }
+    }
+    for (int i = 1; i <= columnCount; i++) {
+      String name = rsmd.getColumnName(i).toUpperCase(Locale.ENGLISH);
+      if (!columnIndexes.containsKey(name)) {
+        columnIndexes.put(name, i);
+      }
+    }
+    List<Object[]> rows = new ArrayList<Object[]>();
+    while (rows.size() < limit && rs.next()) {
+      Object[] row = new Object[columnCount];
+      for (int i = 1; i <= columnCount; i++) {
+        Object value = readColumn(rs, i, types[i - 1]);
+        row[i - 1] = rs.wasNull() ? null : value;
+      }
+      rows.add(row);
+    }
+    return new BufferedResultSet(snapshotMetaData(rsmd), columnIndexes, rows);
+  }
+
+  private static Object readColumn(ResultSet rs, int column, int type) throws SQLException {
+    switch (type) {
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.LONGVARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+        return rs.getString(column);
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+        return rs.getBytes(column);
+      //有些驱动getObject返回的是自己的日期类型,这里统一成java.sql的类型
+      case Types.DATE:
+        return rs.getDate(column);
+      case Types.TIME:
+        return rs.getTime(column);
+      case Types.TIMESTAMP:
+        return rs.getTimestamp(column);
+      default:
+        return rs.getObject(column);
+    }
+  }
+
+  int getRowCount() {
+    return rows.size();
+  }
+
+  ResultSet newResultSet() {
+    InvocationHandler handler = new RowsHandler();
+    ClassLoader cl = ResultSet.class.getClassLoader();
+    return (ResultSet) Proxy.newProxyInstance(cl, new Class[] { ResultSet.class }, handler);
+  }
+
+  private class RowsHandler implements InvocationHandler {
+
+    private int rowIndex = -1;
+    private boolean wasNull;
+    private boolean closed;
+
+    public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+      try {
+        if (Object.class.equals(method.getDeclaringClass())) {
+          return method.invoke(this, params);
+        }
+        String name = method.getName();
+        if ("next".equals(name)) {
+          checkOpen();
+          if (rowIndex < rows.size()) {
+            rowIndex++;
+          }
+          return rowIndex < rows.size();
+        } else if ("close".equals(name)) {
+          closed = true;
+          return null;
+        } else if ("isClosed".equals(name)) {
+          return closed;
+        } else if ("getMetaData".equals(name)) {
+          return metaData;
+        } else if ("wasNull".equals(name)) {
+          return wasNull;
+        } else if ("findColumn".equals(name)) {
+          return findColumn((String) params[0]);
+        } else if ("getRow".equals(name)) {
+          return rowIndex < rows.size() ? rowIndex + 1 : 0;
+        } else if ("getType".equals(name)) {
+          return ResultSet.TYPE_FORWARD_ONLY;
+        } else if ("getConcurrency".equals(name)) {
+          return ResultSet.CONCUR_READ_ONLY;
+        } else if ("getWarnings".equals(name) || "clearWarnings".equals(name)) {
+          return null;
+        } else if (name.startsWith("get") && params != null && params.length > 0
+            && (params[0] instanceof Integer || params[0] instanceof String)) {
+          Object value = getColumnValue(params[0]);
+          wasNull = value == null;
+          return convert(value, method.getReturnType());
+        }
+        throw new SQLException("Method " + name + " is not supported by a buffered ResultSet.");
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+
+    private void checkOpen() throws SQLException {
+      if (closed) {
+        throw new SQLException("ResultSet is closed.");
+      }
+    }
+
+    private int findColumn(String columnLabel) throws SQLException {
+      Integer index = columnIndexes.get(columnLabel.toUpperCase(Locale.ENGLISH));
+      if (index == null) {
+        throw new SQLException("Column '" + columnLabel + "' not found.");
+      }
+      return index;
+    }
+
+    private Object getColumnValue(Object column) throws SQLException {
+      checkOpen();
+      if (rowIndex < 0 || rowIndex >= rows.size()) {
+        throw new SQLException("ResultSet is not positioned on a row.");
+      }
+      int index = column instanceof Integer ? (Integer) column : findColumn((String) column);
+      Object[] row = rows.get(rowIndex);
+      if (index < 1 || index > row.length) {
+        throw new SQLException("Column index " + index + " is out of range.");
+      }
+      return row[index - 1];
+    }
+  }
+
+  private static Object convert(Object value, Class<?> type) throws SQLException {
+    if (value == null) {
+      return type.isPrimitive() ? PRIMITIVE_DEFAULTS.get(type) : null;
+    }
+    if (type.isInstance(value)) {
+      return value;
+    }
+    if (String.class.equals(type)) {
+      return value.toString();
+    }
+    if (boolean.class.equals(type)) {
+      if (value instanceof Boolean) {
+        return value;
+      }
+      if (value instanceof Number) {
+        return ((Number) value).intValue() != 0;
+      }
+      String text = value.toString().trim();
+      return "1".equals(text) || Boolean.valueOf(text);
+    }
+    if (type.isPrimitive()) {
+      Number number = toNumber(value);
+      if (int.class.equals(type)) {
+        return number.intValue();
+      } else if (long.class.equals(type)) {
+        return number.longValue();
+      } else if (double.class.equals(type)) {
+        return number.doubleValue();
+      } else if (float.class.equals(type)) {
+        return number.floatValue();
+      } else if (short.class.equals(type)) {
+        return number.shortValue();
+      } else if (byte.class.equals(type)) {
+        return number.byteValue();
+      }
+    }
+    if (BigDecimal.class.equals(type)) {
+      Number number = toNumber(value);
+      return number instanceof BigInteger ? new BigDecimal((BigInteger) number) : new BigDecimal(number.toString());
+    }
+    if (value instanceof java.util.Date) {
+      long time = ((java.util.Date) value).getTime();
+      if (java.sql.Timestamp.class.equals(type)) {
+        return new java.sql.Timestamp(time);
+      } else if (java.sql.Date.class.equals(type)) {
+        return new java.sql.Date(time);
+      } else if (java.sql.Time.class.equals(type)) {
+        return new java.sql.Time(time);
+      }
+    }
+    if (Reader.class.equals(type)) {
+      return new StringReader(value.toString());
+    }
+    if (InputStream.class.equals(type) && value instanceof byte[]) {
+      return new ByteArrayInputStream((byte[]) value);
+    }
+    throw new SQLException("Cannot convert buffered value of type " + value.getClass().getName() + " to " + type.getName() + ".");
+  }
+
+  private static Number toNumber(Object value) throws SQLException {
+    if (value instanceof Number) {
+      return (Number) value;
+    }
+    if (value instanceof Boolean) {
+      return ((Boolean) value) ? 1 : 0;
+    }
+    try {
+      return new BigDecimal(value.toString().trim());
+    } catch (NumberFormatException e) {
+      SQLException exception = new SQLException("Cannot convert buffered value '" + value + "' to a number.");
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+
+  /**
+   * 复制一份元数据,原来的resultset关闭以后UnknownTypeHandler还需要读取列的类型
+   */
+  private static ResultSetMetaData snapshotMetaData(ResultSetMetaData rsmd) throws SQLException {
+    final int columnCount = rsmd.getColumnCount();
+    final String[] labels = new String[columnCount];
+    final String[] names = new String[columnCount];
+    final int[] types = new int[columnCount];
+    final String[] typeNames = new String[columnCount];
+    final String[] classNames = new String[columnCount];
+    final int[] precisions = new int[columnCount];
+    final int[] scales = new int[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      labels[i] = rsmd.getColumnLabel(i + 1);
+      names[i] = rsmd.getColumnName(i + 1);
+      types[i] = rsmd.getColumnType(i + 1);
+      typeNames[i] = rsmd.getColumnTypeName(i + 1);
+      classNames[i] = rsmd.getColumnClassName(i + 1);
+      precisions[i] = rsmd.getPrecision(i + 1);
+      scales[i] = rsmd.getScale(i + 1);
+    }
+    InvocationHandler handler = new InvocationHandler() {
+      public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+        if (Object.class.equals(method.getDeclaringClass())) {
+          return method.invoke(this, params);
+        }
+        String name = method.getName();
+        if ("getColumnCount".equals(name)) {
+          return columnCount;
+        }
+        if (params == null || !(params[0] instanceof Integer)) {
+          throw new SQLException("Method " + name + " is not supported by buffered ResultSet metadata.");
+        }
+        int i = (Integer) params[0] - 1;
+        if ("getColumnLabel".equals(name)) {
+          return labels[i];
+        } else if ("getColumnName".equals(name)) {
+          return names[i];
+        } else if ("getColumnType".equals(name)) {
+          return types[i];
+        } else if ("getColumnTypeName".equals(name)) {
+          return typeNames[i];
+        } else if ("getColumnClassName".equals(name)) {
+          return classNames[i];
+        } else if ("getPrecision".equals(name)) {
+          return precisions[i];
+        } else if ("getScale".equals(name)) {
+          return scales[i];
+        }
+        throw new SQLException("Method " + name + " is not supported by buffered ResultSet metadata.");
+      }
+    };
+    ClassLoader cl = ResultSetMetaData.class.getClassLoader();
+    return (ResultSetMetaData) Proxy.newProxyInstance(cl, new Class[] { ResultSetMetaData.class }, handler);
+  }
+
+}
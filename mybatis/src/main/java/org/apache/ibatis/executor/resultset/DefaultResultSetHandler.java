@@ -22,15 +22,23 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.BatchResultLoader;
+import org.apache.ibatis.executor.loader.NestedQueryBatch;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
@@ -46,6 +54,8 @@ import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.property.CaseInsensitiveNameIndex;
+import org.apache.ibatis.reflection.property.PropertyPath;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
@@ -80,6 +90,21 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   //缓存resultmapId -- columnPrefix到ancestorColumnPrefix
   private final Map<String, String> ancestorColumnPrefix = new HashMap<String, String>();
 
+  // resultOrdered模式下还没有交给resulthandler的父对象(cursor每次只取一个对象,下一次从这里继续)
+  private Object previousRowValue;
+  private CacheKey previousRowKey;
+
+  // 本次执行实际读取的行数,adaptiveFetchSizeEnabled时用来推算fetchSize
+  private int fetchedRowCount;
+
+  // 声明了batchSelect的嵌套查询,key先登记在这里,结果集处理完以后批量加载
+  private boolean batchingNestedQueries;
+  private final Map<String, NestedQueryBatch> nestedQueryBatches = new LinkedHashMap<String, NestedQueryBatch>();
+  // 声明了batchSelect的懒加载属性,按嵌套查询分组
+  private final Map<String, BatchResultLoader.Group> lazyLoadGroups = new HashMap<String, BatchResultLoader.Group>();
+  // 结果属性名 -> PropertyPath,跟着这个handler一起释放
+  private final Map<String, PropertyPath> propertyPaths = new HashMap<String, PropertyPath>();
+
   // multiple resultsets
   private final Map<String, ResultMapping> nextResultMaps = new HashMap<String, ResultMapping>();
   private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<CacheKey, List<PendingRelation>>();
@@ -144,6 +169,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     ErrorContext.instance().activity("handling results").object(mappedStatement.getId());
     
     final List<Object> multipleResults = new ArrayList<Object>();
+    //cursor不会经过这里,所以只有在这里登记的嵌套查询才能保证被批量加载
+    batchingNestedQueries = configuration.getNestedSelectBatchSize() > 0;
 
     int resultSetCount = 0;
     // 获取stmt的第一个resultset对象并且包装成resultsetwrapper返回,如果没有 返回null
@@ -153,12 +180,21 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     int resultMapCount = resultMaps.size();
     //校验有返回结果resultset的情况下resultmap集合的数量是否是0
     validateResultMapsCount(rsw, resultMapCount);
+    //多个resultset时,互相独立的resultset可以在jdbc线程上读完以后交给工作线程映射
+    final boolean mapInParallel = configuration.isParallelResultSetMappingEnabled() && resultHandler == null && resultMapCount > 1;
+    final List<PendingMapping> pendingMappings = new ArrayList<PendingMapping>();
     //如果查询的返回结果不为空 & mappedstatement里边设置的resultmaps数量 > 查询数据库返回的resultset列数量,一直循环
     while (rsw != null && resultMapCount > resultSetCount) {
       //按照索引index,0 ,, 1,,来获取resultmap
       ResultMap resultMap = resultMaps.get(resultSetCount);
       
-      handleResultSet(rsw, resultMap, multipleResults, null);
+      if (mapInParallel && isIndependentResultMap(resultMap) && BufferedResultSet.isBufferable(rsw.getResultSet())) {
+        pendingMappings.add(new PendingMapping(multipleResults.size(), mapResultSetInParallel(rsw, resultMap)));
+        //占位,映射完成后按原来的顺序放回
+        multipleResults.add(null);
+      } else {
+        handleResultSet(rsw, resultMap, multipleResults, null);
+      }
       rsw = getNextResultSet(stmt);
       cleanUpAfterHandlingResultSet();
       resultSetCount++;
@@ -179,9 +215,41 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       }
     }
 
+    for (PendingMapping pendingMapping : pendingMappings) {
+      multipleResults.set(pendingMapping.index, awaitMapping(pendingMapping.future));
+    }
+    loadNestedQueryBatches();
+
+    if (configuration.isAdaptiveFetchSizeEnabled()) {
+      configuration.getFetchSizeTracker().recordRowCount(mappedStatement.getId(), fetchedRowCount);
+    }
     return collapseSingleResultList(multipleResults);
   }
 
+  /**
+   * 把第一个resultset包装成cursor返回,cursor每次迭代时才映射数据行
+   */
+  public <E> Cursor<E> handleCursorResultSets(Statement stmt) throws SQLException {
+    ErrorContext.instance().activity("handling cursor results").object(mappedStatement.getId());
+
+    ResultSetWrapper rsw = getFirstResultSet(stmt);
+
+    List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+
+    int resultMapCount = resultMaps.size();
+    validateResultMapsCount(rsw, resultMapCount);
+    if (resultMapCount != 1) {
+      throw new ExecutorException("Cursor results cannot be mapped to multiple resultMaps");
+    }
+
+    ResultMap resultMap = resultMaps.get(0);
+    if (resultMap.hasNestedResultMaps() && !mappedStatement.isResultOrdered()) {
+      throw new ExecutorException("Mapped Statements with nested result mappings can only be used with a Cursor "
+          + "if the statement returns ordered data and resultOrdered=true is set on it.");
+    }
+    return new DefaultCursor<E>(this, resultMap, rsw, rowBounds);
+  }
+
   
   /**
    * 
@@ -250,6 +318,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private void cleanUpAfterHandlingResultSet() {
     nestedResultObjects.clear();
     ancestorColumnPrefix.clear();
+    previousRowValue = null;
+    previousRowKey = null;
   }
 
   
@@ -300,6 +370,83 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
+  /**
+   * 没有嵌套resultmap、嵌套查询、discriminator,也不和其他resultset关联的resultmap,映射时不会用到共享的状态和executor
+   */
+  private boolean isIndependentResultMap(ResultMap resultMap) {
+    if (resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries() || resultMap.getDiscriminator() != null) {
+      return false;
+    }
+    for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+      if (resultMapping.getResultSet() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 在当前(jdbc)线程上按rowBounds读完并关闭resultset,对象的创建交给configuration里的工作线程池
+   */
+  private Future<List<Object>> mapResultSetInParallel(ResultSetWrapper rsw, final ResultMap resultMap) throws SQLException {
+    final BufferedResultSet bufferedResultSet;
+    try {
+      skipRows(rsw.getResultSet(), rowBounds);
+      bufferedResultSet = BufferedResultSet.buffer(rsw.getResultSet(), rowBounds.getLimit());
+    } finally {
+      closeResultSet(rsw.getResultSet());
+    }
+    fetchedRowCount += bufferedResultSet.getRowCount();
+    final ResultSetWrapper bufferedRsw = new ResultSetWrapper(bufferedResultSet.newResultSet(), configuration);
+    //每个任务用自己的handler,避免共享nestedResultObjects之类的状态
+    final DefaultResultSetHandler mappingHandler = new DefaultResultSetHandler(executor, mappedStatement, parameterHandler, null, boundSql, RowBounds.DEFAULT);
+    return configuration.getResultSetMappingExecutor().submit(new Callable<List<Object>>() {
+      public List<Object> call() throws Exception {
+        DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
+        mappingHandler.handleRowValues(bufferedRsw, resultMap, defaultResultHandler, RowBounds.DEFAULT, null);
+        return defaultResultHandler.getResultList();
+      }
+    });
+  }
+
+  private List<Object> awaitMapping(Future<List<Object>> future) throws SQLException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutorException("Interrupted while mapping result set.  Cause: " + e, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ExecutorException("Error mapping result set.  Cause: " + cause, cause);
+    }
+  }
+
+  private static class PendingMapping {
+    private final int index;
+    private final Future<List<Object>> future;
+
+    private PendingMapping(int index, Future<List<Object>> future) {
+      this.index = index;
+      this.future = future;
+    }
+  }
+
+  private void loadNestedQueryBatches() throws SQLException {
+    batchingNestedQueries = false;
+    try {
+      for (NestedQueryBatch batch : nestedQueryBatches.values()) {
+        executor.loadBatch(batch);
+      }
+    } finally {
+      nestedQueryBatches.clear();
+    }
+  }
+
   private List<Object> collapseSingleResultList(List<Object> multipleResults) {
     if (multipleResults.size() == 1) {
       @SuppressWarnings("unchecked")
@@ -313,7 +460,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // HANDLE ROWS FOR SIMPLE RESULTMAP
   //
 
-  private void handleRowValues(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
+  public void handleRowValues(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
 	//判断resultmap里边是否有嵌套类型的resultmapping  
     if (resultMap.hasNestedResultMaps()) {
     	//确认是否没有rowbound(内存分页),如果有,抛出异常
@@ -359,6 +506,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     skipRows(rsw.getResultSet(), rowBounds);
     //判断是否还有更多的row要处理,如果有的话，就将resultsetwrapper里边的resultset定位到下一个
     while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
+      fetchedRowCount++;
       //处理resultmap里边的Discriminator(switch)情况,将resultmap返回
       ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
       
@@ -456,21 +604,33 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // PROPERTY MAPPINGS
   //
 
+  /**
+   * 结果属性的PropertyPath,只在这次结果集处理里缓存
+   */
+  private PropertyPath propertyPath(String property) {
+    PropertyPath path = propertyPaths.get(property);
+    if (path == null) {
+      path = PropertyPath.compile(property);
+      propertyPaths.put(property, path);
+    }
+    return path;
+  }
+
   private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, ResultLoaderMap lazyLoader, String columnPrefix)
       throws SQLException {
-    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
+    final CaseInsensitiveNameIndex mappedColumnNames = rsw.getMappedColumnIndex(resultMap, columnPrefix);
     boolean foundValues = false;
     final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
     for (ResultMapping propertyMapping : propertyMappings) {
       final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
       if (propertyMapping.isCompositeResult() 
-          || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) 
+          || (column != null && mappedColumnNames.contains(column)) 
           || propertyMapping.getResultSet() != null) {
         Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
         final String property = propertyMapping.getProperty(); // issue #541 make property optional
         if (value != NO_VALUE && property != null && (value != null || configuration.isCallSettersOnNulls())) { // issue #377, call setter on nulls
           if (value != null || !metaObject.getSetterType(property).isPrimitive()) {
-            metaObject.setValue(property, value);
+            propertyPath(property).setValue(metaObject, value);
           }
           foundValues = true;
         }
@@ -479,6 +639,25 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return foundValues;
   }
 
+  /**
+   * 同columnName.toUpperCase(Locale.ENGLISH).startsWith(prefix),每行每列都会调用,ASCII列名不创建新的字符串
+   */
+  private static boolean startsWithUpperCase(String columnName, String prefix) {
+    if (columnName.length() < prefix.length()) {
+      return columnName.toUpperCase(Locale.ENGLISH).startsWith(prefix);
+    }
+    for (int i = 0, n = prefix.length(); i < n; i++) {
+      char c = columnName.charAt(i);
+      if (c >= 128) {
+        return columnName.toUpperCase(Locale.ENGLISH).startsWith(prefix);
+      }
+      if (Character.toUpperCase(c) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
       throws SQLException {
     if (propertyMapping.getNestedQueryId() != null) {
@@ -504,7 +683,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (columnPrefix != null && columnPrefix.length() > 0) {
         // When columnPrefix is specified,
         // ignore columns without the prefix.
-        if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+        if (startsWithUpperCase(columnName, columnPrefix)) {
           propertyName = columnName.substring(columnPrefix.length());
         } else {
           continue;
@@ -518,7 +697,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           final Object value = typeHandler.getResult(rsw.getResultSet(), columnName);
           if (value != null || configuration.isCallSettersOnNulls()) { // issue #377, call setter on nulls
             if (value != null || !propertyType.isPrimitive()) {
-              metaObject.setValue(property, value);
+              propertyPath(property).setValue(metaObject, value);
             }
             foundValues = true;
           }
@@ -865,8 +1044,18 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       final Class<?> targetType = propertyMapping.getJavaType();
       if (executor.isCached(nestedQuery, key)) {
         executor.deferLoad(nestedQuery, metaResultObject, property, key, targetType);
+      } else if (batchingNestedQueries && !propertyMapping.isLazy() && isBatchableNestedQuery(nestedQuery, propertyMapping)) {
+        //先登记key,结果集处理完以后一次查出来,再通过deferLoad填充属性
+        addToNestedQueryBatch(nestedQuery, key, nestedQueryParameterObject);
+        executor.deferLoad(nestedQuery, metaResultObject, property, key, targetType);
       } else {
-        final ResultLoader resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
+        final ResultLoader resultLoader;
+        if (propertyMapping.isLazy() && isBatchableNestedQuery(nestedQuery, propertyMapping)) {
+          //同一次查询里的兄弟对象共用一个group,第一次触发懒加载时一起查出来
+          resultLoader = new BatchResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql, getLazyLoadGroup(nestedQuery));
+        } else {
+          resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
+        }
         if (propertyMapping.isLazy()) {
           lazyLoader.addLoader(property, metaResultObject, resultLoader);
         } else {
@@ -877,6 +1066,30 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
+  private boolean isBatchableNestedQuery(MappedStatement nestedQuery, ResultMapping propertyMapping) {
+    return configuration.getNestedSelectBatchSize() > 0
+        && nestedQuery.getBatchSelect() != null
+        && !propertyMapping.isCompositeResult();
+  }
+
+  private BatchResultLoader.Group getLazyLoadGroup(MappedStatement nestedQuery) {
+    BatchResultLoader.Group group = lazyLoadGroups.get(nestedQuery.getId());
+    if (group == null) {
+      group = new BatchResultLoader.Group(nestedQuery, configuration.getMappedStatement(nestedQuery.getBatchSelect()));
+      lazyLoadGroups.put(nestedQuery.getId(), group);
+    }
+    return group;
+  }
+
+  private void addToNestedQueryBatch(MappedStatement nestedQuery, CacheKey key, Object parameterObject) {
+    NestedQueryBatch batch = nestedQueryBatches.get(nestedQuery.getId());
+    if (batch == null) {
+      batch = new NestedQueryBatch(nestedQuery, configuration.getMappedStatement(nestedQuery.getBatchSelect()));
+      nestedQueryBatches.put(nestedQuery.getId(), batch);
+    }
+    batch.addKey(key, parameterObject);
+  }
+
   private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
       return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
@@ -999,29 +1212,32 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     final DefaultResultContext resultContext = new DefaultResultContext();
     //根据RowBounds来将resultset跳转到第offset行
     skipRows(rsw.getResultSet(), rowBounds);
-    Object rowValue = null;
+    Object rowValue = previousRowValue;
     //判断是否还有更多的row要处理 && resultset.next()为true
     while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
+      fetchedRowCount++;
       //处理resultmap里边的Discriminator情况,将resultmap返回
       final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
       //columnprefix表示在userResultMap里的column全都加上prefix,以跟select语句里column label的匹配
       //<association property="user" resultMap="userResultMap" columnPrefix="user_"/>
       //为每个resultset创建一个唯一的cachekey
       final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
-      //TODO:尝试从nestedResultObjects通过cachekey获取缓存结果,partialObject可能代表嵌套
-      Object partialObject = nestedResultObjects.get(rowKey);
       //TODO:如果isResultOrdered是true
       if (mappedStatement.isResultOrdered()) { // issue #577 && #542
-    	//如果没有根据缓存key获取到结果 && rowValue 不为空,为rowvalue创建缓存结果,  cachekey -- rowvalue
+        // rows of the same parent are contiguous, so only the previous parent can still be partial;
+        // a key holding nothing but the resultMap id means the row has no id values and cannot be merged
+        Object partialObject = rowKey.getUpdateCount() > 1 && rowKey.equals(previousRowKey) ? rowValue : null;
+        //如果没有根据缓存key获取到结果 && rowValue 不为空,为rowvalue创建缓存结果,  cachekey -- rowvalue
         if (partialObject == null && rowValue != null) {
-          //先清除缓存结果
-          nestedResultObjects.clear();
-          
           storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+          //the parent is complete, drop its graph before mapping the next one
+          releaseNestedResultObjects();
         }
-        //
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, rowKey, null, partialObject);
+        previousRowKey = rowKey;
       } else {
+        //TODO:尝试从nestedResultObjects通过cachekey获取缓存结果,partialObject可能代表嵌套
+        Object partialObject = nestedResultObjects.get(rowKey);
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, rowKey, null, partialObject);
         if (partialObject == null) {
           storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
@@ -1030,8 +1246,23 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
     if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
       storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+      previousRowValue = null;
+      previousRowKey = null;
+      releaseNestedResultObjects();
+    } else if (mappedStatement.isResultOrdered()) {
+      // stopped by the handler (e.g. a cursor), keep the partial parent to resume from it
+      previousRowValue = rowValue;
     }
   }
+
+  /**
+   * resultOrdered模式下,父对象已经交给resulthandler,释放它的子对象缓存,
+   * 这样内存只和一个对象图的大小有关,而不是整个join结果
+   */
+  private void releaseNestedResultObjects() {
+    nestedResultObjects.clear();
+    ancestorObjects.clear();
+  }
   
   //
   // GET VALUE FROM ROW FOR NESTED RESULT MAP
@@ -1376,9 +1607,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         //一个resultmapping对应一个类属性,获取resultmapping(字段)的typehandler
         final TypeHandler<?> th = resultMapping.getTypeHandler();
         //通过(resultmapId:columnPrefix)获取当前resultset(数据库返回列) & resultmapping(类属性)  并集
-        List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
+        CaseInsensitiveNameIndex mappedColumnNames = rsw.getMappedColumnIndex(resultMap, columnPrefix);
         //如果mappedColumnNames并集里边有column
-        if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) { // Issue #114
+        if (column != null && mappedColumnNames.contains(column)) { // Issue #114
           //通过typehandler获取resultset里边column的值,并且转换类型
           final Object value = th.getResult(rsw.getResultSet(), column);
           //如果有值,将column & value更新到cachekey里边
@@ -1414,7 +1645,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         // When columnPrefix is specified,
         // ignore columns without the prefix.
     	  //如果column的大写是以columnprefix开头的,将截取property字段
-        if (column.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+        if (startsWithUpperCase(column, columnPrefix)) {
           property = column.substring(columnPrefix.length());
         } else {
           continue;
@@ -28,6 +28,7 @@ import java.util.Set;
 
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.reflection.property.CaseInsensitiveNameIndex;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.ObjectTypeHandler;
@@ -38,7 +39,7 @@ import org.apache.ibatis.type.UnknownTypeHandler;
 /**
  * @author Iwao AVE!
  */
-class ResultSetWrapper {
+public class ResultSetWrapper {
   //statment.execute()以后返回的resultset对象	
   private final ResultSet resultSet;
   //
@@ -52,6 +53,8 @@ class ResultSetWrapper {
   private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<String, Map<Class<?>, TypeHandler<?>>>();
   private Map<String, List<String>> mappedColumnNamesMap = new HashMap<String, List<String>>();
   private Map<String, List<String>> unMappedColumnNamesMap = new HashMap<String, List<String>>();
+  //mappedColumnNamesMap对应的大小写不敏感查找表
+  private Map<String, CaseInsensitiveNameIndex> mappedColumnIndexMap = new HashMap<String, CaseInsensitiveNameIndex>();
 
   
   /**
@@ -222,6 +225,7 @@ class ResultSetWrapper {
     //获取key,组装resultmapId + columnprefix 返回
     //将mappedColumnNames集合添加到当前对象resultsetwrapper包装的resultset包含的resultmap里边resultmapping设置的数据库列名
     mappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), mappedColumnNames);
+    mappedColumnIndexMap.put(getMapKey(resultMap, columnPrefix), new CaseInsensitiveNameIndex(mappedColumnNames));
     
     unMappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), unmappedColumnNames);
   }
@@ -250,6 +254,23 @@ class ResultSetWrapper {
   }
 
   
+  /**
+   * 同getMappedColumnNames,用来判断列名是否在里边,不需要先把列名转成大写
+   * @param resultMap
+   * @param columnPrefix
+   * @return
+   * @throws SQLException
+   */
+  public CaseInsensitiveNameIndex getMappedColumnIndex(ResultMap resultMap, String columnPrefix) throws SQLException {
+    CaseInsensitiveNameIndex mappedColumnIndex = mappedColumnIndexMap.get(getMapKey(resultMap, columnPrefix));
+    if (mappedColumnIndex == null) {
+      loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
+      mappedColumnIndex = mappedColumnIndexMap.get(getMapKey(resultMap, columnPrefix));
+    }
+    return mappedColumnIndex;
+  }
+
+  
   /**
    * 当前对象resultsetwrapper包装的resultset不包含的resultmap(resultmapping)的字段集合返回
    * 
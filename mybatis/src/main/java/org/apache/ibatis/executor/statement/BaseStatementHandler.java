@@ -18,17 +18,25 @@ package org.apache.ibatis.executor.statement;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.pagination.PaginationDialect;
+import org.apache.ibatis.executor.pagination.PaginationSupport;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.KeysetRowBounds;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.type.TypeHandlerRegistry;
@@ -38,6 +46,8 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  */
 public abstract class BaseStatementHandler implements StatementHandler {
 
+  private static final String KEYSET_LAST_KEY = "_keysetLastKey";
+
   protected final Configuration configuration;
   protected final ObjectFactory objectFactory;
   protected final TypeHandlerRegistry typeHandlerRegistry;
@@ -67,7 +77,6 @@ public abstract class BaseStatementHandler implements StatementHandler {
     this.executor = executor;
     
     this.mappedStatement = mappedStatement;
-    this.rowBounds = rowBounds;
     
     //所有注册的typeHandlerRegistry
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
@@ -81,12 +90,69 @@ public abstract class BaseStatementHandler implements StatementHandler {
       boundSql = mappedStatement.getBoundSql(parameterObject);
     }
 
+    //把RowBounds改写进sql之后,结果集处理时就不需要再跳过行了
+    if (rowBounds != null && isPageableQuery()) {
+      PaginationDialect dialect = configuration.getPaginationDialect();
+      boolean canLimit = dialect != null && !mappedStatement.hasNestedResultMaps();
+      if (rowBounds instanceof KeysetRowBounds) {
+        boundSql = applyKeyset(boundSql, (KeysetRowBounds) rowBounds);
+        if (canLimit) {
+          boundSql = applyPagination(dialect, boundSql, RowBounds.NO_ROW_OFFSET, rowBounds.getLimit());
+          rowBounds = new RowBounds(RowBounds.NO_ROW_OFFSET, RowBounds.NO_ROW_LIMIT, rowBounds.getFetchSize());
+        } else {
+          rowBounds = new RowBounds(RowBounds.NO_ROW_OFFSET, rowBounds.getLimit(), rowBounds.getFetchSize());
+        }
+      } else if (canLimit && configuration.isPushDownRowBounds()
+          && (rowBounds.getOffset() != RowBounds.NO_ROW_OFFSET || rowBounds.getLimit() != RowBounds.NO_ROW_LIMIT)) {
+        boundSql = applyPagination(dialect, boundSql, rowBounds.getOffset(), rowBounds.getLimit());
+        rowBounds = new RowBounds(RowBounds.NO_ROW_OFFSET, RowBounds.NO_ROW_LIMIT, rowBounds.getFetchSize());
+      }
+    }
+
     this.boundSql = boundSql;
+    this.rowBounds = rowBounds;
 
     this.parameterHandler = configuration.newParameterHandler(mappedStatement, parameterObject, boundSql);
     this.resultSetHandler = configuration.newResultSetHandler(executor, mappedStatement, rowBounds, parameterHandler, resultHandler, boundSql);
   }
 
+  /**
+   * 只有普通的select才能改写分页,存储过程和多结果集的statement不处理
+   * @return
+   */
+  private boolean isPageableQuery() {
+    return mappedStatement.getSqlCommandType() == SqlCommandType.SELECT
+        && mappedStatement.getStatementType() != StatementType.CALLABLE
+        && mappedStatement.getResulSets() == null;
+  }
+
+  private BoundSql applyPagination(PaginationDialect dialect, BoundSql boundSql, int offset, int limit) {
+    String pagedSql = dialect.getPagedSql(boundSql.getSql(), offset, limit);
+    return boundSql.rewrite(configuration, pagedSql, boundSql.getParameterMappings());
+  }
+
+  /**
+   * select * from ( 原sql ) ks_ where ks_.key > ? order by ks_.key
+   * 上一页的key作为additionalParameter绑定;原sql是派生表,不能带order by,见KeysetRowBounds
+   */
+  private BoundSql applyKeyset(BoundSql boundSql, KeysetRowBounds keysetRowBounds) {
+    String keyColumn = "ks_." + keysetRowBounds.getKeyColumn();
+    Object lastKey = keysetRowBounds.getLastKey();
+    StringBuilder sql = new StringBuilder("select * from ( ").append(PaginationSupport.trimTrailing(boundSql.getSql())).append(" ) ks_");
+    List<ParameterMapping> parameterMappings = new ArrayList<ParameterMapping>(boundSql.getParameterMappings());
+    if (lastKey != null) {
+      sql.append(" where ").append(keyColumn).append(" > ?");
+      Class<?> keyType = typeHandlerRegistry.hasTypeHandler(lastKey.getClass()) ? lastKey.getClass() : Object.class;
+      parameterMappings.add(new ParameterMapping.Builder(configuration, KEYSET_LAST_KEY, keyType).build());
+    }
+    sql.append(" order by ").append(keyColumn);
+    BoundSql keysetBoundSql = boundSql.rewrite(configuration, sql.toString(), parameterMappings);
+    if (lastKey != null) {
+      keysetBoundSql.setAdditionalParameter(KEYSET_LAST_KEY, lastKey);
+    }
+    return keysetBoundSql;
+  }
+
   public BoundSql getBoundSql() {
     return boundSql;
   }
@@ -147,7 +213,22 @@ public abstract class BaseStatementHandler implements StatementHandler {
    * @throws SQLException
    */
   protected void setFetchSize(Statement stmt) throws SQLException {
-    Integer fetchSize = mappedStatement.getFetchSize();
+    //优先级: RowBounds上的调用提示 > statement配置 > 自适应建议值 > defaultFetchSize
+    Integer fetchSize = rowBounds != null ? rowBounds.getFetchSize() : null;
+    if (fetchSize == null) {
+      fetchSize = mappedStatement.getFetchSize();
+    }
+    Integer defaultFetchSize = configuration.getDefaultFetchSize();
+    if (fetchSize == null && configuration.isAdaptiveFetchSizeEnabled()) {
+      Integer suggested = configuration.getFetchSizeTracker().suggestFetchSize(mappedStatement.getId(), configuration.getAdaptiveFetchSizeLimit());
+      //自适应只会调大,不会低于defaultFetchSize
+      if (suggested != null && (defaultFetchSize == null || suggested > defaultFetchSize)) {
+        fetchSize = suggested;
+      }
+    }
+    if (fetchSize == null) {
+      fetchSize = defaultFetchSize;
+    }
     if (fetchSize != null) {
       stmt.setFetchSize(fetchSize);
     }
@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.statement;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录每个statement实际返回的行数,用于adaptiveFetchSizeEnabled模式下推算fetchSize
+ * 只会把fetchSize往上调,返回行数很少的statement不会得到建议值
+ */
+public class FetchSizeTracker {
+
+  //行数小于这个值的statement没有必要调整fetchSize
+  private static final int MIN_ADAPTIVE_FETCH_SIZE = 16;
+
+  private final ConcurrentHashMap<String, Integer> observedRowCounts = new ConcurrentHashMap<String, Integer>();
+
+  /**
+   * 记录一次执行返回的行数,只保留观察到的最大值
+   * @param statementId
+   * @param rowCount
+   */
+  public void recordRowCount(String statementId, int rowCount) {
+    if (rowCount < MIN_ADAPTIVE_FETCH_SIZE) {
+      return;
+    }
+    Integer previous = observedRowCounts.putIfAbsent(statementId, rowCount);
+    while (previous != null && previous < rowCount) {
+      if (observedRowCounts.replace(statementId, previous, rowCount)) {
+        return;
+      }
+      previous = observedRowCounts.get(statementId);
+    }
+  }
+
+  /**
+   * 根据观察到的最大行数给出fetchSize建议值(向上取2的幂,不超过limit)
+   * @param statementId
+   * @param limit
+   * @return 没有足够数据时返回null
+   */
+  public Integer suggestFetchSize(String statementId, int limit) {
+    Integer observed = observedRowCounts.get(statementId);
+    if (observed == null) {
+      return null;
+    }
+    int suggested = Integer.highestOneBit(observed);
+    if (suggested < observed && suggested < (1 << 30)) {
+      suggested <<= 1;
+    }
+    return Math.min(suggested, limit);
+  }
+
+  public void clear() {
+    observedRowCounts.clear();
+  }
+}
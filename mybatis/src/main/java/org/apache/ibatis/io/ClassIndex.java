@@ -0,0 +1,233 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A build-time index of the classes in some packages, so that {@link ResolverUtil} does not have to
+ * list every jar and directory through {@link VFS} for &lt;package name="..."/&gt; aliases, type
+ * handlers and mappers.
+ * <p>
+ * The index is read from every {@value #INDEX_RESOURCE} resource visible to a class loader. Each line
+ * is either <code>package a.b.c</code>, declaring that a.b.c and its sub-packages are fully indexed,
+ * or a class name followed by the names of its runtime annotations, separated by spaces. Packages
+ * that are not declared by any index are still scanned, so every jar contributing classes to an
+ * indexed package must carry its own index.
+ * <p>
+ * Generate it at build time with:
+ * <pre>
+ * java org.apache.ibatis.io.ClassIndex target/classes/META-INF/mybatis/class.index com.example.domain com.example.mapper
+ * </pre>
+ */
+public final class ClassIndex {
+
+  public static final String INDEX_RESOURCE = "META-INF/mybatis/class.index";
+
+  private static final Log log = LogFactory.getLog(ClassIndex.class);
+
+  private static final String PACKAGE = "package ";
+  private static final String[] NO_ANNOTATIONS = new String[0];
+
+  private static final Map<ClassLoader, ClassIndex> indexes = new WeakHashMap<ClassLoader, ClassIndex>();
+
+  private final Set<String> packages = new HashSet<String>();
+  private final SortedMap<String, String[]> classes = new TreeMap<String, String[]>();
+
+  private ClassIndex() {
+  }
+
+  /**
+   * Returns the merged index of all {@value #INDEX_RESOURCE} resources visible to the class loader.
+   * The result is cached per class loader and is empty when there is no index.
+   */
+  public static ClassIndex forClassLoader(ClassLoader classLoader) {
+    synchronized (indexes) {
+      ClassIndex index = indexes.get(classLoader);
+      if (index == null) {
+        index = load(classLoader);
+        indexes.put(classLoader, index);
+      }
+      return index;
+    }
+  }
+
+  public static ClassIndex read(Reader reader) throws IOException {
+    ClassIndex index = new ClassIndex();
+    index.add(reader);
+    return index;
+  }
+
+  private static ClassIndex load(ClassLoader classLoader) {
+    ClassIndex index = new ClassIndex();
+    try {
+      Enumeration<URL> urls = classLoader.getResources(INDEX_RESOURCE);
+      while (urls.hasMoreElements()) {
+        URL url = urls.nextElement();
+        Reader reader = new InputStreamReader(url.openStream(), "UTF-8");
+        try {
+          index.add(reader);
+        } finally {
+          reader.close();
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Could not read class index, packages will be scanned. Cause: " + e);
+      return new ClassIndex();
+    }
+    return index;
+  }
+
+  private void add(Reader reader) throws IOException {
+    BufferedReader lines = new BufferedReader(reader);
+    String line;
+    while ((line = lines.readLine()) != null) {
+      line = line.trim();
+      if (line.length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      if (line.startsWith(PACKAGE)) {
+        packages.add(line.substring(PACKAGE.length()).trim());
+        continue;
+      }
+      String[] names = line.split("\\s+");
+      String[] annotations = NO_ANNOTATIONS;
+      if (names.length > 1) {
+        annotations = new String[names.length - 1];
+        System.arraycopy(names, 1, annotations, 0, annotations.length);
+      }
+      classes.put(names[0], annotations);
+    }
+  }
+
+  /**
+   * @return true if the package, or one of its parent packages, is declared by an index
+   */
+  public boolean covers(String packageName) {
+    if (packages.isEmpty() || packageName == null) {
+      return false;
+    }
+    String name = packageName;
+    while (true) {
+      if (packages.contains(name)) {
+        return true;
+      }
+      int dot = name.lastIndexOf('.');
+      if (dot < 0) {
+        return false;
+      }
+      name = name.substring(0, dot);
+    }
+  }
+
+  /**
+   * @return the indexed classes of the package and its sub-packages, like {@link VFS#list(String)}
+   */
+  public List<String> getClassNames(String packageName) {
+    String prefix = packageName + ".";
+    return new ArrayList<String>(classes.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+  }
+
+  public boolean hasAnnotation(String className, String annotationName) {
+    String[] annotations = classes.get(className);
+    if (annotations != null) {
+      for (String annotation : annotations) {
+        if (annotation.equals(annotationName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes an index declaring the packages and listing the given classes with their runtime annotations.
+   */
+  public static void write(Writer writer, Collection<String> packageNames, Collection<Class<?>> types) throws IOException {
+    for (String packageName : new TreeSet<String>(packageNames)) {
+      writer.write(PACKAGE);
+      writer.write(packageName);
+      writer.write('\n');
+    }
+    List<Class<?>> sorted = new ArrayList<Class<?>>(types);
+    Collections.sort(sorted, new Comparator<Class<?>>() {
+      public int compare(Class<?> o1, Class<?> o2) {
+        return o1.getName().compareTo(o2.getName());
+      }
+    });
+    for (Class<?> type : sorted) {
+      writer.write(type.getName());
+      for (Annotation annotation : type.getAnnotations()) {
+        writer.write(' ');
+        writer.write(annotation.annotationType().getName());
+      }
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * Build-time entry point: args[0] is the index file to write, the other arguments are the packages
+   * to index. The classes are found with a regular VFS scan of the current class path.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("Usage: ClassIndex <index file> <package> [<package> ...]");
+    }
+    List<String> packageNames = new ArrayList<String>();
+    ResolverUtil<Object> resolverUtil = new ResolverUtil<Object>();
+    for (int i = 1; i < args.length; i++) {
+      packageNames.add(args[i]);
+      resolverUtil.scan(new ResolverUtil.IsA(Object.class), args[i]);
+    }
+    File file = new File(args[0]);
+    if (file.getParentFile() != null) {
+      file.getParentFile().mkdirs();
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      write(writer, packageNames, new ArrayList<Class<?>>(resolverUtil.getClasses()));
+    } finally {
+      writer.close();
+    }
+  }
+
+}
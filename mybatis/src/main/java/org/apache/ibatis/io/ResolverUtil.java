@@ -17,9 +17,14 @@ package org.apache.ibatis.io;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -62,6 +67,14 @@ public class ResolverUtil<T> {
    */
   private static final Log log = LogFactory.getLog(ResolverUtil.class);
 
+  /*
+   * VFS listings of the packages scanned so far, by context class loader and package path.
+   * Only filled while the listing cache is enabled.
+   */
+  private static final Map<ClassLoader, Map<String, List<String>>> classListings = new WeakHashMap<ClassLoader, Map<String, List<String>>>();
+
+  private static volatile boolean listingCacheEnabled;
+
   /**
    * A simple interface that specifies how to test classes to determine if they
    * are to be included in the results produced by the ResolverUtil.
@@ -204,19 +217,53 @@ public class ResolverUtil<T> {
    * Each class is offered up to the Test as it is discovered, and if the Test returns
    * true the class is retained.  Accumulated classes can be fetched by calling
    * {@link #getClasses()}.
+   * <p>
+   * Packages declared by a {@link ClassIndex} are looked up there instead of being scanned.
    *
    * @param test an instance of {@link Test} that will be used to filter classes
    * @param packageName the name of the package from which to start scanning for
    *        classes, e.g. {@code net.sourceforge.stripes}
    */
   public ResolverUtil<T> find(Test test, String packageName) {
-    String path = getPackagePath(packageName);
+    ClassIndex index = ClassIndex.forClassLoader(getClassLoader());
+    if (!index.covers(packageName)) {
+      return scan(test, packageName);
+    }
+    for (String className : index.getClassNames(packageName)) {
+      // annotations are in the index, so classes without the annotation are not even loaded
+      if (test instanceof AnnotatedWith && !index.hasAnnotation(className, ((AnnotatedWith) test).annotation.getName())) {
+        continue;
+      }
+      addIfMatching(test, className.replace('.', '/') + ".class");
+    }
+    return this;
+  }
 
+  /**
+   * Enables or disables caching of VFS package listings. The cache is off by default. When
+   * it is on, a package is listed once per context class loader, so classes added to the package
+   * later are not seen until the cache is disabled again. Disabling it clears the cache.
+   *
+   * @param enabled true to cache package listings
+   */
+  public static void setListingCacheEnabled(boolean enabled) {
+    listingCacheEnabled = enabled;
+    if (!enabled) {
+      synchronized (classListings) {
+        classListings.clear();
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #find(Test, String)} but always lists the package through {@link VFS}.
+   * The listing is cached per context class loader if {@link #setListingCacheEnabled(boolean)} is on.
+   */
+  ResolverUtil<T> scan(Test test, String packageName) {
     try {
-      List<String> children = VFS.getInstance().list(path);
+      List<String> children = listClasses(getPackagePath(packageName));
       for (String child : children) {
-        if (child.endsWith(".class"))
-          addIfMatching(test, child);
+        addIfMatching(test, child);
       }
     } catch (IOException ioe) {
       log.error("Could not read package: " + packageName, ioe);
@@ -225,6 +272,37 @@ public class ResolverUtil<T> {
     return this;
   }
 
+  private List<String> listClasses(String path) throws IOException {
+    if (!listingCacheEnabled) {
+      return readClasses(path);
+    }
+    // VFS lists through the context class loader, so that is what the listing depends on
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    Map<String, List<String>> listings;
+    synchronized (classListings) {
+      listings = classListings.get(loader);
+      if (listings == null) {
+        listings = new ConcurrentHashMap<String, List<String>>();
+        classListings.put(loader, listings);
+      }
+    }
+    List<String> classes = listings.get(path);
+    if (classes == null) {
+      classes = Collections.unmodifiableList(readClasses(path));
+      listings.put(path, classes);
+    }
+    return classes;
+  }
+
+  private List<String> readClasses(String path) throws IOException {
+    List<String> classes = new ArrayList<String>();
+    for (String child : VFS.getInstance().list(path)) {
+      if (child.endsWith(".class"))
+        classes.add(child);
+    }
+    return classes;
+  }
+
   /**
    * Converts a Java package name to a path that can be looked up with a call to
    * {@link ClassLoader#getResources(String)}.
@@ -20,7 +20,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.property.PropertyPath;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
  * An actual SQL String got form an {@link SqlSource} after having processed any dynamic content.
@@ -44,6 +46,8 @@ public class BoundSql {
   private Map<String, Object> additionalParameters;
   //TODO:
   private MetaObject metaParameters;
+  //每个ParameterMapping对应的参数值,createCacheKey和setParameters共用,只解析一次
+  private Object[] parameterValues;
 
   
   /**
@@ -85,8 +89,21 @@ public class BoundSql {
     return metaParameters.hasGetter(name);
   }
 
+  /**
+   * 同hasAdditionalParameter(String),没有其他参数时不用解析属性名
+   * @param path
+   * @return
+   */
+  public boolean hasAdditionalParameter(PropertyPath path) {
+    if (path.isSingleSegment()) {
+      return additionalParameters.containsKey(path.getRootName());
+    }
+    return additionalParameters.containsKey(path.getRootIndexedName()) && metaParameters.hasGetter(path.getFullName());
+  }
+
   public void setAdditionalParameter(String name, Object value) {
     metaParameters.setValue(name, value);
+    parameterValues = null;
   }
   
   /**
@@ -97,4 +114,60 @@ public class BoundSql {
   public Object getAdditionalParameter(String name) {
     return metaParameters.getValue(name);
   }
+
+  public Object getAdditionalParameter(PropertyPath path) {
+    return path.getValue(metaParameters);
+  }
+
+  /**
+   * 按parameterMappings的顺序取出所有参数值,第一次调用时解析,之后直接返回同一个数组
+   * OUT参数的位置为null
+   * 
+   * 取值顺序:additionalParameters里有就从里边取(issue #448),parameterObject为null时为null,
+   * parameterObject有TypeHandler(基本类型)时就是parameterObject本身,其他情况按属性路径取
+   * @param configuration
+   * @return
+   */
+  public Object[] getParameterValues(Configuration configuration) {
+    if (parameterValues == null) {
+      parameterValues = resolveParameterValues(configuration);
+    }
+    return parameterValues;
+  }
+
+  private Object[] resolveParameterValues(Configuration configuration) {
+    final int size = parameterMappings == null ? 0 : parameterMappings.size();
+    final Object[] values = new Object[size];
+    final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+    final boolean simpleParameter = parameterObject != null && typeHandlerRegistry.hasTypeHandler(parameterObject.getClass());
+    for (int i = 0; i < size; i++) {
+      ParameterMapping parameterMapping = parameterMappings.get(i);
+      if (parameterMapping.getMode() != ParameterMode.OUT) {
+        PropertyPath propertyPath = parameterMapping.getPropertyPath();
+        if (hasAdditionalParameter(propertyPath)) {
+          values[i] = getAdditionalParameter(propertyPath);
+        } else if (parameterObject == null) {
+          values[i] = null;
+        } else if (simpleParameter) {
+          values[i] = parameterObject;
+        } else {
+          values[i] = propertyPath.getValue(parameterObject, configuration.getObjectFactory(), configuration.getObjectWrapperFactory());
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * 用改写后的sql(比如分页)生成新的BoundSql,原来的additionalParameters会一起带过去
+   * @param configuration
+   * @param sql
+   * @param parameterMappings
+   * @return
+   */
+  public BoundSql rewrite(Configuration configuration, String sql, List<ParameterMapping> parameterMappings) {
+    BoundSql rewritten = new BoundSql(configuration, sql, parameterMappings, parameterObject);
+    rewritten.additionalParameters.putAll(additionalParameters);
+    return rewritten;
+  }
 }
@@ -73,6 +73,10 @@ public final class MappedStatement {
 //获取默认的解析实例，xml
   private LanguageDriver lang;
   private String[] resultSets;
+  //批量加载嵌套查询时使用的statement id,参数是key的list
+  private String batchSelect;
+  //batchSelect返回的对象里和key对应的属性
+  private String batchKeyProperty;
 
   
   /**
@@ -243,6 +247,16 @@ public final class MappedStatement {
       mappedStatement.resultSets = delimitedStringtoArray(resultSet);
       return this;
     }
+
+    public Builder batchSelect(String batchSelect) {
+      mappedStatement.batchSelect = batchSelect;
+      return this;
+    }
+
+    public Builder batchKeyProperty(String batchKeyProperty) {
+      mappedStatement.batchKeyProperty = batchKeyProperty;
+      return this;
+    }
     
     
     /**
@@ -366,6 +380,14 @@ public final class MappedStatement {
   public String[] getResulSets() {
     return resultSets;
   }
+
+  public String getBatchSelect() {
+    return batchSelect;
+  }
+
+  public String getBatchKeyProperty() {
+    return batchKeyProperty;
+  }
   
   
   /**
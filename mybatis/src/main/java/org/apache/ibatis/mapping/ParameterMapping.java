@@ -17,6 +17,7 @@ package org.apache.ibatis.mapping;
 
 import java.sql.ResultSet;
 
+import org.apache.ibatis.reflection.property.PropertyPath;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
@@ -38,6 +39,8 @@ public class ParameterMapping {
   private Configuration configuration;
   //属性名
   private String property;
+  //预先解析好的属性路径
+  private PropertyPath propertyPath;
   //参数类型,默认为In参数
   private ParameterMode mode;
   //java类型
@@ -146,6 +149,9 @@ public class ParameterMapping {
       resolveTypeHandler();
       // 合法性校验
       validate();
+      if (parameterMapping.property != null) {
+        parameterMapping.propertyPath = PropertyPath.compile(parameterMapping.property);
+      }
       //返回parameterMapping
       return parameterMapping;
     }
@@ -191,6 +197,14 @@ public class ParameterMapping {
     return property;
   }
 
+  /**
+   * property预先解析好的路径,取参数值时不用再解析属性名
+   * @return
+   */
+  public PropertyPath getPropertyPath() {
+    return propertyPath;
+  }
+
   /**
    * Used for handling output of callable statements
    * @return
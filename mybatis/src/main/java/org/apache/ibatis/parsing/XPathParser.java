@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
@@ -198,6 +199,14 @@ public class XPathParser {
 
   public List<XNode> evalNodes(Object root, String expression) {
     List<XNode> xnodes = new ArrayList<XNode>();
+    if (root instanceof Node && isChildStepPath(expression)) {
+      List<Node> nodes = new ArrayList<Node>();
+      selectChildren((Node) root, expression, nodes, false);
+      for (Node node : nodes) {
+        xnodes.add(new XNode(this, node, variables));
+      }
+      return xnodes;
+    }
     NodeList nodes = (NodeList) evaluate(expression, root, XPathConstants.NODESET);
     for (int i = 0; i < nodes.getLength(); i++) {
       xnodes.add(new XNode(this, nodes.item(i), variables));
@@ -210,7 +219,14 @@ public class XPathParser {
   }
 
   public XNode evalNode(Object root, String expression) {
-    Node node = (Node) evaluate(expression, root, XPathConstants.NODE);
+    Node node;
+    if (root instanceof Node && isChildStepPath(expression)) {
+      List<Node> nodes = new ArrayList<Node>(1);
+      selectChildren((Node) root, expression, nodes, true);
+      node = nodes.isEmpty() ? null : nodes.get(0);
+    } else {
+      node = (Node) evaluate(expression, root, XPathConstants.NODE);
+    }
     if (node == null) {
       return null;
     }
@@ -225,6 +241,75 @@ public class XPathParser {
     }
   }
 
+  /*
+   * Expressions like "cache-ref", "select|insert|update|delete" or "/mapper/sql" only step through
+   * child elements by name, so they are answered by walking the DOM instead of compiling XPath.
+   */
+  private static boolean isChildStepPath(String expression) {
+    int length = expression.length();
+    if (length == 0) {
+      return false;
+    }
+    boolean union = false;
+    boolean path = false;
+    char previous = '/';
+    for (int i = 0; i < length; i++) {
+      char c = expression.charAt(i);
+      if (c == '/' || c == '|') {
+        if (previous == '|' || previous == '/' && (i > 0 || c == '|')) {
+          return false;
+        }
+        if (c == '/') {
+          path = true;
+        } else {
+          union = true;
+        }
+      } else if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == '-' && i > 0 || c >= '0' && c <= '9' && i > 0)) {
+        return false;
+      }
+      previous = c;
+    }
+    return previous != '/' && previous != '|' && !(union && path);
+  }
+
+  private static void selectChildren(Node root, String expression, List<Node> result, boolean first) {
+    if (expression.indexOf('|') >= 0) {
+      List<String> names = Arrays.asList(expression.split("\\|"));
+      for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE && names.contains(child.getNodeName())) {
+          result.add(child);
+          if (first) {
+            return;
+          }
+        }
+      }
+      return;
+    }
+    Node context = root;
+    String path = expression;
+    if (path.charAt(0) == '/') {
+      context = root.getNodeType() == Node.DOCUMENT_NODE ? root : root.getOwnerDocument();
+      path = path.substring(1);
+    }
+    selectSteps(context, path.split("/"), 0, result, first);
+  }
+
+  private static boolean selectSteps(Node context, String[] steps, int step, List<Node> result, boolean first) {
+    for (Node child = context.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE && steps[step].equals(child.getNodeName())) {
+        if (step == steps.length - 1) {
+          result.add(child);
+          if (first) {
+            return true;
+          }
+        } else if (selectSteps(child, steps, step + 1, result, first)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private Document createDocument(InputSource inputSource) {
     // important: this must only be called AFTER common constructor
     try {
@@ -86,6 +86,10 @@ public class MetaClass {
    * @return
    */
   public String findProperty(String name, boolean useCamelCaseMapping) {
+    //没有 . 的属性名直接查reflector,忽略大小写和下划线时不用拼新的字符串
+    if (name.indexOf('.') < 0) {
+      return reflector.findPropertyName(name, useCamelCaseMapping);
+    }
 	  //如果使用了骆驼法则,将_替换成空字符串
     if (useCamelCaseMapping) {
       name = name.replace("_", "");
@@ -294,7 +298,7 @@ public class MetaClass {
    * 例如：
    * RICHfield  -  richField
    * 
-   * 因为最终是要在reflector中通过caseInsensitivePropertyMap来查找的，caseInsensitivePropertyMap里边的key是字段的大写
+   * 因为最终是要在reflector中通过caseInsensitivePropertyNames来查找的，caseInsensitivePropertyNames里边的key是字段的大写
    * 所以可以匹配出来
    * 
    * 
@@ -307,7 +311,7 @@ public class MetaClass {
     PropertyTokenizer prop = new PropertyTokenizer(name);
     // xxx.yyyy情况
     if (prop.hasNext()) {
-      //在caseInsensitivePropertyMap中获取key为name(大写)的属性名
+      //在caseInsensitivePropertyNames中获取key为name(大写)的属性名
       String propertyName = reflector.findPropertyName(prop.getName());
       if (propertyName != null) {
         builder.append(propertyName);
@@ -317,7 +321,7 @@ public class MetaClass {
         metaProp.buildProperty(prop.getChildren(), builder);
       }
     } else {
-    	//在caseInsensitivePropertyMap中获取key为name(大写)的属性名
+    	//在caseInsensitivePropertyNames中获取key为name(大写)的属性名
       String propertyName = reflector.findPropertyName(name);
       if (propertyName != null) {
         builder.append(propertyName);
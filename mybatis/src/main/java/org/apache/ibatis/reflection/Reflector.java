@@ -21,18 +21,20 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ReflectPermission;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.ibatis.reflection.invoker.DefaultInvokerFactory;
 import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
 import org.apache.ibatis.reflection.invoker.Invoker;
-import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.invoker.InvokerFactory;
 import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+import org.apache.ibatis.reflection.property.CaseInsensitiveNameIndex;
 import org.apache.ibatis.reflection.property.PropertyNamer;
 
 /*
@@ -50,6 +52,8 @@ public class Reflector {
   private static boolean classCacheEnabled = true;
   private static final String[] EMPTY_STRING_ARRAY = new String[0];
   private static final Map<Class<?>, Reflector> REFLECTOR_MAP = new ConcurrentHashMap<Class<?>, Reflector>();
+  //创建get/set方法的Invoker,只影响之后新解析的类
+  private static InvokerFactory invokerFactory = new DefaultInvokerFactory();
 
   //哪个类的类信息
   private Class<?> type;
@@ -69,8 +73,8 @@ public class Reflector {
   private Map<String, Class<?>> getTypes = new HashMap<String, Class<?>>();
   //默认构造参数
   private Constructor<?> defaultConstructor;
-  //对所有字段名大小写不敏感的map ， 结构： 属性名大写 - 属性名正常
-  private Map<String, String> caseInsensitivePropertyMap = new HashMap<String, String>();
+  //对所有字段名大小写不敏感的查找表 ， 结构： 属性名大写 - 属性名正常
+  private CaseInsensitiveNameIndex caseInsensitivePropertyNames;
 
   
   
@@ -95,14 +99,12 @@ public class Reflector {
     writeablePropertyNames = setMethods.keySet().toArray(new String[setMethods.keySet().size()]);
     
     /**
-     * 将大小写不敏感的所有可读&可写的属性名加入到caseInsensitivePropertyMap里边
+     * 将大小写不敏感的所有可读&可写的属性名加入到caseInsensitivePropertyNames里边
      */
-    for (String propName : readablePropertyNames) {
-      caseInsensitivePropertyMap.put(propName.toUpperCase(Locale.ENGLISH), propName);
-    }
-    for (String propName : writeablePropertyNames) {
-      caseInsensitivePropertyMap.put(propName.toUpperCase(Locale.ENGLISH), propName);
-    }
+    List<String> propNames = new ArrayList<String>(readablePropertyNames.length + writeablePropertyNames.length);
+    propNames.addAll(Arrays.asList(readablePropertyNames));
+    propNames.addAll(Arrays.asList(writeablePropertyNames));
+    caseInsensitivePropertyNames = new CaseInsensitiveNameIndex(propNames);
   }
 
   
@@ -252,7 +254,7 @@ public class Reflector {
 	//验证字段的名称合法性
     if (isValidPropertyName(name)) {
       //存储 属性名 的methodInvoker方法
-      getMethods.put(name, new MethodInvoker(method));
+      getMethods.put(name, invokerFactory.newMethodInvoker(type, method));
       //存放 属性名-返回类型 的数据
       getTypes.put(name, method.getReturnType());
     }
@@ -379,7 +381,7 @@ public class Reflector {
    */
   private void addSetMethod(String name, Method method) {
     if (isValidPropertyName(name)) {
-      setMethods.put(name, new MethodInvoker(method));
+      setMethods.put(name, invokerFactory.newMethodInvoker(type, method));
       setTypes.put(name, method.getParameterTypes()[0]);
     }
   }
@@ -737,12 +739,22 @@ public class Reflector {
 
   
   /**
-   * 在caseInsensitivePropertyMap中获取key为name(大写)的属性名
+   * 在caseInsensitivePropertyNames中获取key为name(大写)的属性名
    * @param name
    * @return
    */
   public String findPropertyName(String name) {
-    return caseInsensitivePropertyMap.get(name.toUpperCase(Locale.ENGLISH));
+    return caseInsensitivePropertyNames.find(name);
+  }
+
+  /**
+   * 同findPropertyName(String),ignoreUnderscores时忽略name里的下划线,不会创建新的字符串
+   * @param name
+   * @param ignoreUnderscores
+   * @return
+   */
+  public String findPropertyName(String name, boolean ignoreUnderscores) {
+    return caseInsensitivePropertyNames.find(name, ignoreUnderscores);
   }
 
   /*
@@ -774,6 +786,25 @@ public class Reflector {
     }
   }
 
+  /**
+   * 已经缓存了Reflector的类,用于ReflectorPreloader写快照
+   */
+  static Collection<Class<?>> getCachedClasses() {
+    return new ArrayList<Class<?>>(REFLECTOR_MAP.keySet());
+  }
+
+  /**
+   * 设置get/set方法Invoker的创建方式,比如cglib的FastClassInvokerFactory;已经缓存的Reflector不受影响,需要在第一次使用前设置
+   * @param invokerFactory
+   */
+  public static void setInvokerFactory(InvokerFactory invokerFactory) {
+    Reflector.invokerFactory = invokerFactory == null ? new DefaultInvokerFactory() : invokerFactory;
+  }
+
+  public static InvokerFactory getInvokerFactory() {
+    return invokerFactory;
+  }
+
   public static void setClassCacheEnabled(boolean classCacheEnabled) {
     Reflector.classCacheEnabled = classCacheEnabled;
   }
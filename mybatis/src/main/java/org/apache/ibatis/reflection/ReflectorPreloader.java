@@ -0,0 +1,205 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * 启动时预先构建Reflector,避免部署后第一批请求在请求线程里解析类的get/set方法
+ * 
+ * 从给定的类型开始,按层并行构建Reflector,再继续处理这些类的属性类型(java.*、javax.*、基本类型除外)
+ * 
+ * Method和Field不能序列化,快照里只记录已经解析过的类名,下次启动时把这些类一起预热,
+ * 这样只在运行时才遇到的类型(比如resultType里嵌套的对象)也能提前构建
+ * 
+ */
+public final class ReflectorPreloader {
+
+  private ReflectorPreloader() {
+  }
+
+  /**
+   * @param types       起始类型
+   * @param parallelism 并行线程数,小于等于1时在当前线程执行
+   * @return 预热的类型数量
+   */
+  public static int preload(Collection<Class<?>> types, int parallelism) {
+    if (!Reflector.isClassCacheEnabled()) {
+      return 0; // nothing would be kept
+    }
+    final ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, new PreloadThreadFactory()) : null;
+    try {
+      final Set<Class<?>> seen = new HashSet<Class<?>>();
+      List<Class<?>> level = new ArrayList<Class<?>>();
+      for (Class<?> type : types) {
+        addType(type, seen, level);
+      }
+      int built = 0;
+      while (!level.isEmpty()) {
+        final List<Class<?>> next = new ArrayList<Class<?>>();
+        for (Reflector reflector : reflectAll(level, executor)) {
+          if (reflector == null) {
+            continue;
+          }
+          built++;
+          for (String name : reflector.getGetablePropertyNames()) {
+            addType(reflector.getGetterType(name), seen, next);
+          }
+          for (String name : reflector.getSetablePropertyNames()) {
+            addType(reflector.getSetterType(name), seen, next);
+          }
+        }
+        level = next;
+      }
+      return built;
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * 按类名排序写出当前已经缓存的Reflector,一行一个类名
+   * @param writer
+   * @throws IOException
+   */
+  public static void writeSnapshot(Writer writer) throws IOException {
+    final List<String> names = new ArrayList<String>();
+    for (Class<?> type : Reflector.getCachedClasses()) {
+      names.add(type.getName());
+    }
+    Collections.sort(names);
+    for (String name : names) {
+      writer.write(name);
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * 读取快照里的类,已经不存在或加载失败的类直接跳过
+   * @param reader
+   * @param classLoader
+   * @return
+   * @throws IOException
+   */
+  public static List<Class<?>> readSnapshot(Reader reader, ClassLoader classLoader) throws IOException {
+    final List<Class<?>> types = new ArrayList<Class<?>>();
+    final BufferedReader lines = new BufferedReader(reader);
+    String line;
+    while ((line = lines.readLine()) != null) {
+      line = line.trim();
+      if (line.length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      try {
+        types.add(Class.forName(line, false, classLoader));
+      } catch (ClassNotFoundException e) {
+        // class was removed since the snapshot was written
+      } catch (LinkageError e) {
+        // ignore, it will fail the same way when it is used
+      }
+    }
+    return types;
+  }
+
+  private static void addType(Class<?> type, Set<Class<?>> seen, List<Class<?>> level) {
+    while (type != null && type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type == null || type.isPrimitive() || isPlatformType(type.getName())) {
+      return;
+    }
+    if (seen.add(type)) {
+      level.add(type);
+    }
+  }
+
+  private static boolean isPlatformType(String name) {
+    return name.startsWith("java.") || name.startsWith("javax.");
+  }
+
+  private static List<Reflector> reflectAll(List<Class<?>> types, ExecutorService executor) {
+    final List<Reflector> reflectors = new ArrayList<Reflector>(types.size());
+    if (executor == null) {
+      for (Class<?> type : types) {
+        reflectors.add(reflect(type));
+      }
+      return reflectors;
+    }
+    final List<Future<Reflector>> futures = new ArrayList<Future<Reflector>>(types.size());
+    for (final Class<?> type : types) {
+      futures.add(executor.submit(new Callable<Reflector>() {
+        public Reflector call() {
+          return reflect(type);
+        }
+      }));
+    }
+    for (Future<Reflector> future : futures) {
+      try {
+        reflectors.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException e) {
+        reflectors.add(null);
+      }
+    }
+    return reflectors;
+  }
+
+  /**
+   * 预热失败不影响启动,真正用到这个类时还会报同样的错
+   */
+  private static Reflector reflect(Class<?> type) {
+    try {
+      return Reflector.forClass(type);
+    } catch (RuntimeException e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  private static class PreloadThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "mybatis-reflector-preload-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
@@ -0,0 +1,33 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.Method;
+
+/**
+ * 
+ * Reflector为每个get/set方法创建Invoker时调用,实现可以按类型选择更快的调用方式,不支持的方法返回MethodInvoker
+ * 
+ */
+public interface InvokerFactory {
+
+  /**
+   * @param type   Reflector正在解析的类
+   * @param method type(或父类)里的get/set方法
+   */
+  Invoker newMethodInvoker(Class<?> type, Method method);
+
+}
@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker.cglib;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.cglib.reflect.FastClass;
+
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.InvokerFactory;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+
+/**
+ * 
+ * 用cglib的FastClass生成直接调用get/set方法的类,调用时按下标switch到具体方法,不走Method.invoke,
+ * JIT可以把get/set方法内联进映射循环
+ * 
+ * 只处理public类的public方法,其他方法(以及生成失败的类)还是用MethodInvoker
+ * 
+ */
+public class FastClassInvokerFactory implements InvokerFactory {
+
+  //生成失败的类
+  private static final Object UNSUPPORTED = new Object();
+
+  private final Map<Class<?>, Object> fastClasses = new ConcurrentHashMap<Class<?>, Object>();
+
+  public FastClassInvokerFactory() {
+    try {
+      Class.forName("net.sf.cglib.reflect.FastClass");
+    } catch (Throwable e) {
+      throw new IllegalStateException("Cannot enable FastClassInvokerFactory. Cglib is not available. Add cglib to your classpath.", e);
+    }
+  }
+
+  public Invoker newMethodInvoker(Class<?> type, Method method) {
+    if (Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(method.getModifiers())) {
+      FastClass fastClass = fastClassFor(type);
+      if (fastClass != null) {
+        int index = fastClass.getIndex(method.getName(), method.getParameterTypes());
+        if (index >= 0) {
+          return new FastMethodInvoker(method, fastClass.getMethod(method));
+        }
+      }
+    }
+    return new MethodInvoker(method);
+  }
+
+  private FastClass fastClassFor(Class<?> type) {
+    Object fastClass = fastClasses.get(type);
+    if (fastClass == null) {
+      try {
+        fastClass = FastClass.create(type);
+      } catch (Throwable e) {
+        fastClass = UNSUPPORTED; // e.g. a class loader that cglib can not define classes in
+      }
+      fastClasses.put(type, fastClass);
+    }
+    return fastClass == UNSUPPORTED ? null : (FastClass) fastClass;
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker.cglib;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import net.sf.cglib.reflect.FastMethod;
+
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+
+/**
+ * 
+ * 通过FastMethod调用,继承MethodInvoker是为了MetaClass还能取到method的泛型返回类型
+ * 
+ */
+class FastMethodInvoker extends MethodInvoker {
+
+  private final FastMethod fastMethod;
+
+  FastMethodInvoker(Method method, FastMethod fastMethod) {
+    super(method);
+    this.fastMethod = fastMethod;
+  }
+
+  @Override
+  public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+    return fastMethod.invoke(target, args);
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.property;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * 
+ * 大小写不敏感(可选忽略下划线)的名字查找表,构建时把名字转成大写放进开放寻址的哈希表,
+ * 查找时逐个字符转大写计算哈希和比较,不会创建新的字符串
+ * 
+ * 只有ASCII字符的名字走逐字符比较,其他名字先toUpperCase(Locale.ENGLISH)再查,结果和HashMap的写法一致
+ * 
+ */
+public final class CaseInsensitiveNameIndex {
+
+  //大写的名字
+  private final String[] keys;
+  //原来的名字
+  private final String[] names;
+  private final int mask;
+
+  /**
+   * @param names 同一个大写名字出现多次时,后面的覆盖前面的
+   */
+  public CaseInsensitiveNameIndex(Collection<String> names) {
+    int capacity = 4;
+    while (capacity < names.size() * 2) {
+      capacity <<= 1;
+    }
+    this.keys = new String[capacity];
+    this.names = new String[capacity];
+    this.mask = capacity - 1;
+    for (String name : names) {
+      put(name.toUpperCase(Locale.ENGLISH), name);
+    }
+  }
+
+  private void put(String key, String name) {
+    int slot = hash(key, false) & mask;
+    while (keys[slot] != null && !keys[slot].equals(key)) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    names[slot] = name;
+  }
+
+  public String find(String name) {
+    return find(name, false);
+  }
+
+  /**
+   * @param name
+   * @param ignoreUnderscores 查找时跳过name里的下划线(mapUnderscoreToCamelCase)
+   * @return 原来的名字,找不到返回null
+   */
+  public String find(String name, boolean ignoreUnderscores) {
+    if (!isAscii(name)) {
+      String key = (ignoreUnderscores ? name.replace("_", "") : name).toUpperCase(Locale.ENGLISH);
+      return lookup(key, false);
+    }
+    return lookup(name, ignoreUnderscores);
+  }
+
+  public boolean contains(String name) {
+    return find(name, false) != null;
+  }
+
+  private String lookup(String name, boolean ignoreUnderscores) {
+    int slot = hash(name, ignoreUnderscores) & mask;
+    String key;
+    while ((key = keys[slot]) != null) {
+      if (matches(key, name, ignoreUnderscores)) {
+        return names[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  private static int hash(String name, boolean ignoreUnderscores) {
+    int h = 0;
+    for (int i = 0, n = name.length(); i < n; i++) {
+      char c = name.charAt(i);
+      if (ignoreUnderscores && c == '_') {
+        continue;
+      }
+      h = 31 * h + Character.toUpperCase(c);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean matches(String key, String name, boolean ignoreUnderscores) {
+    int k = 0;
+    final int keyLength = key.length();
+    for (int i = 0, n = name.length(); i < n; i++) {
+      char c = name.charAt(i);
+      if (ignoreUnderscores && c == '_') {
+        continue;
+      }
+      if (k == keyLength || key.charAt(k++) != Character.toUpperCase(c)) {
+        return false;
+      }
+    }
+    return k == keyLength;
+  }
+
+  private static boolean isAscii(String name) {
+    for (int i = 0, n = name.length(); i < n; i++) {
+      if (name.charAt(i) >= 128) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
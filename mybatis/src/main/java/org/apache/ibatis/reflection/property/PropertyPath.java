@@ -0,0 +1,237 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.property;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapper;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
+
+/**
+ * 
+ * 预先解析好的属性路径  xx.yyy.zzzz 和 xx[10].yyy
+ * 
+ * MetaObject每次getValue/setValue都要重新new PropertyTokenizer并截取字符串,
+ * PropertyPath只解析一次,每一段缓存上次遇到的类型的get/set方法的Invoker,
+ * 普通JavaBean和Map直接取值,带[index]、集合、自定义ObjectWrapper的那一段还是交给ObjectWrapper处理,结果和MetaObject一致
+ * 
+ */
+public final class PropertyPath {
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  private final String fullName;
+  private final Segment[] segments;
+
+  private PropertyPath(String fullName) {
+    this.fullName = fullName;
+    int count = 1;
+    for (PropertyTokenizer prop = new PropertyTokenizer(fullName); prop.hasNext(); prop = prop.next()) {
+      count++;
+    }
+    this.segments = new Segment[count];
+    PropertyTokenizer prop = new PropertyTokenizer(fullName);
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment(prop);
+      if (prop.hasNext()) {
+        prop = prop.next();
+      }
+    }
+  }
+
+  /**
+   * 解析属性名,不做全局缓存(属性名里有foreach生成的__frch_item_N这种无限多的名字),
+   * 由调用方持有,比如ParameterMapping
+   * @param fullName
+   * @return
+   */
+  public static PropertyPath compile(String fullName) {
+    return new PropertyPath(fullName);
+  }
+
+  public String getFullName() {
+    return fullName;
+  }
+
+  /**
+   * 第一段的属性名,xx[10].yyy 返回 xx
+   */
+  public String getRootName() {
+    return segments[0].name;
+  }
+
+  /**
+   * 第一段带索引的属性名,xx[10].yyy 返回 xx[10]
+   */
+  public String getRootIndexedName() {
+    return segments[0].indexedName;
+  }
+
+  /**
+   * 是否只有一段(没有 . )
+   */
+  public boolean isSingleSegment() {
+    return segments.length == 1;
+  }
+
+  public Object getValue(MetaObject metaObject) {
+    return getValue(metaObject.getOriginalObject(), metaObject.getObjectFactory(), metaObject.getObjectWrapperFactory());
+  }
+
+  /**
+   * 和MetaObject.forObject(object, ...).getValue(fullName)结果一样,中间某一段为null时返回null
+   * @param object
+   * @param objectFactory
+   * @param objectWrapperFactory
+   * @return
+   */
+  public Object getValue(Object object, ObjectFactory objectFactory, ObjectWrapperFactory objectWrapperFactory) {
+    Object value = object;
+    for (int i = 0; i < segments.length; i++) {
+      if (value == null) {
+        return null;
+      }
+      value = segments[i].get(value, objectFactory, objectWrapperFactory);
+    }
+    return value;
+  }
+
+  /**
+   * 和metaObject.setValue(fullName, value)结果一样,只有一段的JavaBean和Map直接赋值,
+   * 多段路径可能要实例化中间对象,交给MetaObject
+   * @param metaObject
+   * @param value
+   */
+  public void setValue(MetaObject metaObject, Object value) {
+    if (segments.length == 1) {
+      final Object object = metaObject.getOriginalObject();
+      if (object != null && segments[0].set(object, value, metaObject.getObjectWrapperFactory())) {
+        return;
+      }
+    }
+    metaObject.setValue(fullName, value);
+  }
+
+  @Override
+  public String toString() {
+    return fullName;
+  }
+
+  /**
+   * 路径中的一段,tokenizer和MetaObject里为这一段new出来的PropertyTokenizer一样(没有children)
+   */
+  private static final class Segment {
+
+    private final String name;
+    private final String indexedName;
+    private final String index;
+    private final PropertyTokenizer tokenizer;
+    //上一次遇到的类型和它的Invoker,大部分属性路径只会遇到一种类型
+    private volatile ResolvedInvoker getter;
+    private volatile ResolvedInvoker setter;
+
+    private Segment(PropertyTokenizer prop) {
+      this.name = prop.getName();
+      this.indexedName = prop.getIndexedName();
+      this.index = prop.getIndex();
+      this.tokenizer = new PropertyTokenizer(indexedName);
+    }
+
+    private Object get(Object object, ObjectFactory objectFactory, ObjectWrapperFactory objectWrapperFactory) {
+      if (isPlain(object, objectWrapperFactory)) {
+        if (object instanceof Map) {
+          return ((Map<?, ?>) object).get(name);
+        }
+        final Class<?> type = object.getClass();
+        ResolvedInvoker resolved = getter;
+        if (resolved == null || resolved.type != type) {
+          resolved = new ResolvedInvoker(type, Reflector.forClass(type).getGetInvoker(name));
+          getter = resolved;
+        }
+        try {
+          try {
+            return resolved.invoker.invoke(object, NO_ARGUMENTS);
+          } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+          }
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Throwable t) {
+          throw new ReflectionException("Could not get property '" + name + "' from " + type + ".  Cause: " + t.toString(), t);
+        }
+      }
+      return MetaObject.forObject(object, objectFactory, objectWrapperFactory).getObjectWrapper().get(tokenizer);
+    }
+
+    /**
+     * @return false表示不能直接赋值
+     */
+    @SuppressWarnings("unchecked")
+    private boolean set(Object object, Object value, ObjectWrapperFactory objectWrapperFactory) {
+      if (!isPlain(object, objectWrapperFactory)) {
+        return false;
+      }
+      if (object instanceof Map) {
+        ((Map<String, Object>) object).put(name, value);
+        return true;
+      }
+      final Class<?> type = object.getClass();
+      ResolvedInvoker resolved = setter;
+      if (resolved == null || resolved.type != type) {
+        resolved = new ResolvedInvoker(type, Reflector.forClass(type).getSetInvoker(name));
+        setter = resolved;
+      }
+      try {
+        try {
+          resolved.invoker.invoke(object, new Object[] { value });
+        } catch (Throwable t) {
+          throw ExceptionUtil.unwrapThrowable(t);
+        }
+      } catch (Throwable t) {
+        throw new ReflectionException("Could not set property '" + name + "' of '" + type + "' with value '" + value + "' Cause: " + t.toString(), t);
+      }
+      return true;
+    }
+
+    /**
+     * 没有[index],并且MetaObject会用BeanWrapper或MapWrapper包装的对象
+     */
+    private boolean isPlain(Object object, ObjectWrapperFactory objectWrapperFactory) {
+      return index == null
+          && !(object instanceof ObjectWrapper)
+          && !(object instanceof Collection)
+          && !objectWrapperFactory.hasWrapperFor(object);
+    }
+  }
+
+  private static final class ResolvedInvoker {
+    private final Class<?> type;
+    private final Invoker invoker;
+
+    private ResolvedInvoker(Class<?> type, Invoker invoker) {
+      this.type = type;
+      this.invoker = invoker;
+    }
+  }
+
+}
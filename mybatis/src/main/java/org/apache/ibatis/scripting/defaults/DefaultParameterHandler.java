@@ -25,11 +25,9 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
-import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
-import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
  * @author Clinton Begin
@@ -37,8 +35,6 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  */
 public class DefaultParameterHandler implements ParameterHandler {
 
-  private final TypeHandlerRegistry typeHandlerRegistry;
-
   private final MappedStatement mappedStatement;
   private final Object parameterObject;
   private BoundSql boundSql;
@@ -54,7 +50,6 @@ public class DefaultParameterHandler implements ParameterHandler {
   public DefaultParameterHandler(MappedStatement mappedStatement, Object parameterObject, BoundSql boundSql) {
     this.mappedStatement = mappedStatement;
     this.configuration = mappedStatement.getConfiguration();
-    this.typeHandlerRegistry = mappedStatement.getConfiguration().getTypeHandlerRegistry();
     this.parameterObject = parameterObject;
     this.boundSql = boundSql;
   }
@@ -76,30 +71,13 @@ public class DefaultParameterHandler implements ParameterHandler {
     //获取ParameterMapping集合,如果不为空,就遍历集合
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     if (parameterMappings != null) {
+      //参数值已经在createCacheKey时解析过的话直接复用
+      Object[] values = boundSql.getParameterValues(configuration);
       for (int i = 0; i < parameterMappings.size(); i++) {
         ParameterMapping parameterMapping = parameterMappings.get(i);
         //TODO:如果parameterMapping的mode不是OUT
         if (parameterMapping.getMode() != ParameterMode.OUT) {
-          Object value;
-          //获取属性名
-          String propertyName = parameterMapping.getProperty();
-          //属性名name是否在sql需要的参数里边,?
-          if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
-            value = boundSql.getAdditionalParameter(propertyName);
-            
-            //如果parameterObject参数对象为空,value=null
-          } else if (parameterObject == null) {
-            value = null;
-            
-            //如果parameterObject是基本类型,直接赋值value
-          } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
-            value = parameterObject;
-            
-            //其他情况,组装parameterObject的MetaOject对象,获取propertyName的value
-          } else {
-            MetaObject metaObject = configuration.newMetaObject(parameterObject);
-            value = metaObject.getValue(propertyName);
-          }
+          Object value = values[i];
           //获取parameterMapping(类某个字段的信息)的类型(typehandler)
           TypeHandler typeHandler = parameterMapping.getTypeHandler();
           //获取parameterMapping(类某个字段的信息)的数据库类型(jdbctype)
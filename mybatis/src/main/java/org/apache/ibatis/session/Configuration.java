@@ -15,15 +15,31 @@
  */
 package org.apache.ibatis.session;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
@@ -45,14 +61,23 @@ import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.SimpleExecutor;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.bulk.BatchInsertBulkLoadSink;
+import org.apache.ibatis.executor.bulk.BulkLoadSink;
+import org.apache.ibatis.executor.bulk.PostgresCopyBulkLoadSink;
+import org.apache.ibatis.executor.loader.LazyLoadDispatch;
+import org.apache.ibatis.executor.loader.LazyLoadSessionPool;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
+import org.apache.ibatis.executor.pagination.PaginationDialect;
+import org.apache.ibatis.executor.pagination.PaginationDialectRegistry;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.FetchSizeTracker;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.logging.commons.JakartaCommonsLoggingImpl;
@@ -66,12 +91,14 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMap;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.VendorDatabaseIdProvider;
 import org.apache.ibatis.parsing.XNode;
 import org.apache.ibatis.plugin.Interceptor;
 import org.apache.ibatis.plugin.InterceptorChain;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectorPreloader;
 import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
@@ -112,7 +139,49 @@ public class Configuration {
   protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
   //懒加载触发方法
   protected Set<String> lazyLoadTriggerMethods = new HashSet<String>(Arrays.asList(new String[] { "equals", "clone", "hashCode", "toString" }));
+  //懒加载代理的方法分派表,aggressiveLazyLoading或lazyLoadTriggerMethods改变时重建
+  protected LazyLoadDispatch lazyLoadDispatch;
   protected Integer defaultStatementTimeout;
+  //statement和RowBounds都没有指定fetchSize时使用的默认值
+  protected Integer defaultFetchSize;
+  //根据statement实际返回的行数自动调大fetchSize
+  protected boolean adaptiveFetchSizeEnabled = false;
+  protected int adaptiveFetchSizeLimit = 1000;
+  //把RowBounds的offset/limit改写进sql,而不是在客户端跳过行
+  protected boolean pushDownRowBounds = false;
+  //不指定时根据databaseId从paginationDialectRegistry里查找
+  protected PaginationDialect paginationDialect;
+  //多结果集时把互相独立的resultset交给工作线程映射
+  protected boolean parallelResultSetMappingEnabled = false;
+  protected int parallelResultSetMappingThreads = Runtime.getRuntime().availableProcessors();
+  protected ExecutorService resultSetMappingExecutor;
+  //声明了batchSelect的嵌套查询每次批量查询的key数量,0表示不批量
+  protected int nestedSelectBatchSize = 100;
+  //会话关闭后或者在其他线程上触发的懒加载共用的会话池,0表示每次懒加载都新建executor
+  protected int lazyLoadPoolMaximumSessions = 0;
+  protected int lazyLoadPoolIdleTimeout = 1000;
+  //BATCH执行器:交替执行的语句也按MappedStatement和sql归到各自的批次
+  protected boolean batchGroupStatements = false;
+  //BATCH执行器:等待执行的参数达到这个数目时自动执行批次,0表示等到flushStatements
+  protected int batchFlushSize = 0;
+  //BATCH执行器:把同一条简单INSERT的多行合并成一条多行VALUES语句,每条语句最多batchRewriteMaxParameters个参数
+  protected boolean batchRewriteInserts = false;
+  protected int batchRewriteMaxParameters = 2000;
+  //SqlSession.bulkLoad:按顺序使用第一个支持的sink,通用的批量INSERT总在最后
+  protected int bulkLoadBatchSize = 1000;
+  protected final List<BulkLoadSink> bulkLoadSinks = new ArrayList<BulkLoadSink>(Arrays.asList(new PostgresCopyBulkLoadSink(), new BatchInsertBulkLoadSink()));
+  //lazyLoadPoolMaximumSessions大于0时创建,由close关闭
+  protected volatile LazyLoadSessionPool lazyLoadSessionPool;
+  //解析完mapper以后用几个线程预先构建ResultMap/ParameterMap里的类型的Reflector,0表示不预热
+  protected int reflectorPreloadThreads = 0;
+  //预热时一起加载的类名快照文件,可以用writeReflectorSnapshot生成
+  protected String reflectorSnapshotFile;
+  //XMLConfigBuilder用几个线程并行解析mapper xml,小于等于1时顺序解析
+  protected int mapperParseThreads = 0;
+  //mapper xml的二进制快照(文件路径或classpath资源),由MapperSnapshot生成
+  protected String mapperSnapshotFile;
+  //用不校验的SAX解析器流式读取mapper xml,默认用DocumentBuilder;注意开启以后mapper xml不再按DTD校验,拼错的元素名和属性名不会在解析时报错
+  protected boolean useStreamingMapperParser = false;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
 
@@ -137,10 +206,12 @@ public class Configuration {
   protected Class<?> configurationFactory;
 
   protected final InterceptorChain interceptorChain = new InterceptorChain();
+  protected final FetchSizeTracker fetchSizeTracker = new FetchSizeTracker();
   //java的8中基本类型初始化
   protected final TypeHandlerRegistry typeHandlerRegistry = new TypeHandlerRegistry();
   protected final TypeAliasRegistry typeAliasRegistry = new TypeAliasRegistry();
   protected final LanguageDriverRegistry languageRegistry = new LanguageDriverRegistry();
+  protected final PaginationDialectRegistry paginationDialectRegistry = new PaginationDialectRegistry();
 
   protected final Map<String, MappedStatement> mappedStatements = new StrictMap<MappedStatement>("Mapped Statements collection");
   protected final Map<String, Cache> caches = new StrictMap<Cache>("Caches collection");
@@ -362,6 +433,7 @@ public class Configuration {
 
   public void setAggressiveLazyLoading(boolean aggressiveLazyLoading) {
     this.aggressiveLazyLoading = aggressiveLazyLoading;
+    this.lazyLoadDispatch = null;
   }
 
   public boolean isMultipleResultSetsEnabled() {
@@ -386,6 +458,16 @@ public class Configuration {
 
   public void setLazyLoadTriggerMethods(Set<String> lazyLoadTriggerMethods) {
     this.lazyLoadTriggerMethods = lazyLoadTriggerMethods;
+    this.lazyLoadDispatch = null;
+  }
+
+  public LazyLoadDispatch getLazyLoadDispatch() {
+    LazyLoadDispatch dispatch = lazyLoadDispatch;
+    if (dispatch == null) {
+      dispatch = new LazyLoadDispatch(this);
+      lazyLoadDispatch = dispatch;
+    }
+    return dispatch;
   }
 
   public boolean isUseGeneratedKeys() {
@@ -429,6 +511,315 @@ public class Configuration {
     this.defaultStatementTimeout = defaultStatementTimeout;
   }
 
+  public Integer getDefaultFetchSize() {
+    return defaultFetchSize;
+  }
+
+  public void setDefaultFetchSize(Integer defaultFetchSize) {
+    this.defaultFetchSize = defaultFetchSize;
+  }
+
+  public boolean isAdaptiveFetchSizeEnabled() {
+    return adaptiveFetchSizeEnabled;
+  }
+
+  public void setAdaptiveFetchSizeEnabled(boolean adaptiveFetchSizeEnabled) {
+    this.adaptiveFetchSizeEnabled = adaptiveFetchSizeEnabled;
+  }
+
+  public int getAdaptiveFetchSizeLimit() {
+    return adaptiveFetchSizeLimit;
+  }
+
+  public void setAdaptiveFetchSizeLimit(int adaptiveFetchSizeLimit) {
+    this.adaptiveFetchSizeLimit = adaptiveFetchSizeLimit;
+  }
+
+  public FetchSizeTracker getFetchSizeTracker() {
+    return fetchSizeTracker;
+  }
+
+  public boolean isPushDownRowBounds() {
+    return pushDownRowBounds;
+  }
+
+  public void setPushDownRowBounds(boolean pushDownRowBounds) {
+    this.pushDownRowBounds = pushDownRowBounds;
+  }
+
+  /**
+   * 显式配置的paginationDialect优先,否则按databaseId查找,都没有时返回null
+   * @return
+   */
+  public PaginationDialect getPaginationDialect() {
+    if (paginationDialect != null) {
+      return paginationDialect;
+    }
+    return paginationDialectRegistry.getDialect(databaseId);
+  }
+
+  public void setPaginationDialect(PaginationDialect paginationDialect) {
+    this.paginationDialect = paginationDialect;
+  }
+
+  public PaginationDialectRegistry getPaginationDialectRegistry() {
+    return paginationDialectRegistry;
+  }
+
+  public boolean isParallelResultSetMappingEnabled() {
+    return parallelResultSetMappingEnabled;
+  }
+
+  public void setParallelResultSetMappingEnabled(boolean parallelResultSetMappingEnabled) {
+    this.parallelResultSetMappingEnabled = parallelResultSetMappingEnabled;
+  }
+
+  public int getParallelResultSetMappingThreads() {
+    return parallelResultSetMappingThreads;
+  }
+
+  public void setParallelResultSetMappingThreads(int parallelResultSetMappingThreads) {
+    this.parallelResultSetMappingThreads = parallelResultSetMappingThreads;
+  }
+
+  /**
+   * 第一次使用时创建,最多parallelResultSetMappingThreads个线程,空闲60秒后退出,
+   * 线程都在忙的时候由调用线程自己映射,所以不会无限堆积
+   * @return
+   */
+  public synchronized ExecutorService getResultSetMappingExecutor() {
+    if (resultSetMappingExecutor == null) {
+      int threads = Math.max(1, parallelResultSetMappingThreads);
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS,
+          new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "mybatis-resultset-mapping-" + threadNumber.getAndIncrement());
+              thread.setDaemon(true);
+              return thread;
+            }
+          }, new ThreadPoolExecutor.CallerRunsPolicy());
+      resultSetMappingExecutor = pool;
+    }
+    return resultSetMappingExecutor;
+  }
+
+  public synchronized void setResultSetMappingExecutor(ExecutorService resultSetMappingExecutor) {
+    this.resultSetMappingExecutor = resultSetMappingExecutor;
+  }
+
+  public int getNestedSelectBatchSize() {
+    return nestedSelectBatchSize;
+  }
+
+  public void setNestedSelectBatchSize(int nestedSelectBatchSize) {
+    this.nestedSelectBatchSize = nestedSelectBatchSize;
+  }
+
+  public int getLazyLoadPoolMaximumSessions() {
+    return lazyLoadPoolMaximumSessions;
+  }
+
+  public void setLazyLoadPoolMaximumSessions(int lazyLoadPoolMaximumSessions) {
+    this.lazyLoadPoolMaximumSessions = lazyLoadPoolMaximumSessions;
+    if (lazyLoadPoolMaximumSessions > 0 && (lazyLoadSessionPool == null || lazyLoadSessionPool.isClosed())) {
+      lazyLoadSessionPool = new LazyLoadSessionPool(this);
+    }
+  }
+
+  public int getLazyLoadPoolIdleTimeout() {
+    return lazyLoadPoolIdleTimeout;
+  }
+
+  public void setLazyLoadPoolIdleTimeout(int lazyLoadPoolIdleTimeout) {
+    this.lazyLoadPoolIdleTimeout = lazyLoadPoolIdleTimeout;
+  }
+
+  public boolean isBatchGroupStatements() {
+    return batchGroupStatements;
+  }
+
+  public void setBatchGroupStatements(boolean batchGroupStatements) {
+    this.batchGroupStatements = batchGroupStatements;
+  }
+
+  public int getBatchFlushSize() {
+    return batchFlushSize;
+  }
+
+  public void setBatchFlushSize(int batchFlushSize) {
+    this.batchFlushSize = batchFlushSize;
+  }
+
+  public boolean isBatchRewriteInserts() {
+    return batchRewriteInserts;
+  }
+
+  public void setBatchRewriteInserts(boolean batchRewriteInserts) {
+    this.batchRewriteInserts = batchRewriteInserts;
+  }
+
+  public int getBatchRewriteMaxParameters() {
+    return batchRewriteMaxParameters;
+  }
+
+  public void setBatchRewriteMaxParameters(int batchRewriteMaxParameters) {
+    this.batchRewriteMaxParameters = batchRewriteMaxParameters;
+  }
+
+  public int getBulkLoadBatchSize() {
+    return bulkLoadBatchSize;
+  }
+
+  public void setBulkLoadBatchSize(int bulkLoadBatchSize) {
+    this.bulkLoadBatchSize = bulkLoadBatchSize;
+  }
+
+  public List<BulkLoadSink> getBulkLoadSinks() {
+    return bulkLoadSinks;
+  }
+
+  /**
+   * 自定义的sink排在内置的前面
+   */
+  public void addBulkLoadSink(BulkLoadSink sink) {
+    bulkLoadSinks.add(0, sink);
+  }
+
+  public int getReflectorPreloadThreads() {
+    return reflectorPreloadThreads;
+  }
+
+  public void setReflectorPreloadThreads(int reflectorPreloadThreads) {
+    this.reflectorPreloadThreads = reflectorPreloadThreads;
+  }
+
+  public String getReflectorSnapshotFile() {
+    return reflectorSnapshotFile;
+  }
+
+  public void setReflectorSnapshotFile(String reflectorSnapshotFile) {
+    this.reflectorSnapshotFile = reflectorSnapshotFile;
+  }
+
+  public int getMapperParseThreads() {
+    return mapperParseThreads;
+  }
+
+  public void setMapperParseThreads(int mapperParseThreads) {
+    this.mapperParseThreads = mapperParseThreads;
+  }
+
+  public String getMapperSnapshotFile() {
+    return mapperSnapshotFile;
+  }
+
+  public void setMapperSnapshotFile(String mapperSnapshotFile) {
+    this.mapperSnapshotFile = mapperSnapshotFile;
+  }
+
+  public boolean isUseStreamingMapperParser() {
+    return useStreamingMapperParser;
+  }
+
+  /**
+   * 开启以后不再按DTD校验mapper xml,DTD只用来展开实体
+   * 测试代码里的MapperParserBenchmark可以比较两种解析方式的时间和内存
+   */
+  public void setUseStreamingMapperParser(boolean useStreamingMapperParser) {
+    this.useStreamingMapperParser = useStreamingMapperParser;
+  }
+
+  /**
+   * 预先构建所有ResultMap、ParameterMap、MappedStatement用到的类型(以及它们的属性类型)的Reflector,
+   * 设置了reflectorSnapshotFile并且文件存在时,快照里的类也一起构建
+   * @return 预热的类型数量
+   */
+  public int preloadReflectors() {
+    final Set<Class<?>> types = new LinkedHashSet<Class<?>>();
+    // StrictMap values can hold Ambiguity markers for short names
+    for (Object value : resultMaps.values()) {
+      if (value instanceof ResultMap) {
+        types.add(((ResultMap) value).getType());
+      }
+    }
+    for (Object value : parameterMaps.values()) {
+      if (value instanceof ParameterMap) {
+        addParameterMapTypes((ParameterMap) value, types);
+      }
+    }
+    for (Object value : mappedStatements.values()) {
+      if (value instanceof MappedStatement) {
+        MappedStatement ms = (MappedStatement) value;
+        if (ms.getParameterMap() != null) {
+          addParameterMapTypes(ms.getParameterMap(), types);
+        }
+        for (ResultMap resultMap : ms.getResultMaps()) {
+          types.add(resultMap.getType());
+        }
+      }
+    }
+    if (reflectorSnapshotFile != null) {
+      File snapshot = new File(reflectorSnapshotFile);
+      if (snapshot.isFile()) {
+        try {
+          Reader reader = new InputStreamReader(new FileInputStream(snapshot), "UTF-8");
+          try {
+            ClassLoader classLoader = Resources.getDefaultClassLoader();
+            types.addAll(ReflectorPreloader.readSnapshot(reader, classLoader != null ? classLoader : Configuration.class.getClassLoader()));
+          } finally {
+            reader.close();
+          }
+        } catch (IOException e) {
+          // the snapshot is only a hint, preload what the mappers reference
+        }
+      }
+    }
+    return ReflectorPreloader.preload(types, reflectorPreloadThreads);
+  }
+
+  private void addParameterMapTypes(ParameterMap parameterMap, Set<Class<?>> types) {
+    types.add(parameterMap.getType());
+    for (ParameterMapping parameterMapping : parameterMap.getParameterMappings()) {
+      types.add(parameterMapping.getJavaType());
+    }
+  }
+
+  /**
+   * 把当前已经构建过的Reflector的类名写到reflectorSnapshotFile,下次启动时preloadReflectors会一起预热
+   * @throws IOException
+   */
+  public void writeReflectorSnapshot() throws IOException {
+    if (reflectorSnapshotFile == null) {
+      throw new IllegalStateException("reflectorSnapshotFile is not set");
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(reflectorSnapshotFile), "UTF-8");
+    try {
+      ReflectorPreloader.writeSnapshot(writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * @return lazyLoadPoolMaximumSessions没有大于0过时返回null
+   */
+  public LazyLoadSessionPool getLazyLoadSessionPool() {
+    return lazyLoadSessionPool;
+  }
+
+  /**
+   * 关闭Configuration持有的懒加载会话池里的会话(和它们的连接);
+   * SqlSessionFactory不再使用时调用,之后会话池里的懒加载会抛出ExecutorException
+   */
+  public void close() {
+    LazyLoadSessionPool pool = lazyLoadSessionPool;
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
   public boolean isUseColumnLabel() {
     return useColumnLabel;
   }
@@ -0,0 +1,56 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.regex.Pattern;
+
+/**
+ * keyset分页(seek method): 不用offset,而是从上一页最后一条记录的key继续往后取
+ * 生成的sql为 select * from ( 原sql ) where keyColumn > ? order by keyColumn,
+ * 所以不管翻到第几页,数据库都只需要读取limit行;
+ * 原sql会成为派生表,所以不能带order by(sql server等数据库不允许派生表里有order by),顺序由keyColumn决定
+ */
+public class KeysetRowBounds extends RowBounds {
+
+  private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*");
+
+  //结果集中的key列名,会直接拼进sql,所以只允许普通的列名
+  private final String keyColumn;
+  //上一页最后一条记录的key,为null表示取第一页
+  private final Object lastKey;
+
+  public KeysetRowBounds(String keyColumn, Object lastKey, int limit) {
+    this(keyColumn, lastKey, limit, null);
+  }
+
+  public KeysetRowBounds(String keyColumn, Object lastKey, int limit, Integer fetchSize) {
+    super(NO_ROW_OFFSET, limit, fetchSize);
+    if (keyColumn == null || !COLUMN_NAME.matcher(keyColumn).matches()) {
+      throw new IllegalArgumentException("Invalid keyset column name: " + keyColumn);
+    }
+    this.keyColumn = keyColumn;
+    this.lastKey = lastKey;
+  }
+
+  public String getKeyColumn() {
+    return keyColumn;
+  }
+
+  public Object getLastKey() {
+    return lastKey;
+  }
+
+}
@@ -30,6 +30,8 @@ public class RowBounds {
   private int offset;
   //自定义一页的行数
   private int limit;
+  //本次调用的fetchSize提示,优先于statement上配置的fetchSize
+  private Integer fetchSize;
 
   
   /**
@@ -46,6 +48,12 @@ public class RowBounds {
     this.limit = limit;
   }
 
+  public RowBounds(int offset, int limit, Integer fetchSize) {
+    this.offset = offset;
+    this.limit = limit;
+    this.fetchSize = fetchSize;
+  }
+
   public int getOffset() {
     return offset;
   }
@@ -54,4 +62,8 @@ public class RowBounds {
     return limit;
   }
 
+  public Integer getFetchSize() {
+    return fetchSize;
+  }
+
 }
@@ -17,11 +17,13 @@ package org.apache.ibatis.session.defaults;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.executor.BatchResult;
@@ -45,6 +47,7 @@ public class DefaultSqlSession implements SqlSession {
 
   private boolean autoCommit;
   private boolean dirty;
+  private List<Cursor<?>> cursorList;
   
   public DefaultSqlSession(Configuration configuration, Executor executor, boolean autoCommit) {
     this.configuration = configuration;
@@ -94,6 +97,27 @@ public class DefaultSqlSession implements SqlSession {
     return selectedMap;
   }
 
+  public <T> Cursor<T> selectCursor(String statement) {
+    return selectCursor(statement, null);
+  }
+
+  public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+    return selectCursor(statement, parameter, RowBounds.DEFAULT);
+  }
+
+  public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+    try {
+      MappedStatement ms = configuration.getMappedStatement(statement);
+      Cursor<T> cursor = executor.queryCursor(ms, wrapCollection(parameter), rowBounds);
+      registerCursor(cursor);
+      return cursor;
+    } catch (Exception e) {
+      throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+    } finally {
+      ErrorContext.instance().reset();
+    }
+  }
+
   public <E> List<E> selectList(String statement) {
     return this.selectList(statement, null);
   }
@@ -161,6 +185,18 @@ public class DefaultSqlSession implements SqlSession {
     }
   }
 
+  public long bulkLoad(String statement, Iterable<?> parameters) {
+    try {
+      dirty = true;
+      MappedStatement ms = configuration.getMappedStatement(statement);
+      return executor.bulkLoad(ms, parameters);
+    } catch (Exception e) {
+      throw ExceptionFactory.wrapException("Error bulk loading into database.  Cause: " + e, e);
+    } finally {
+      ErrorContext.instance().reset();
+    }
+  }
+
   public int delete(String statement) {
     return update(statement, null);
   }
@@ -211,6 +247,7 @@ public class DefaultSqlSession implements SqlSession {
 
   public void close() {
     try {
+      closeCursors();
       executor.close(isCommitOrRollbackRequired(false));
       dirty = false;
     } finally {
@@ -218,6 +255,15 @@ public class DefaultSqlSession implements SqlSession {
     }
   }
 
+  private void closeCursors() {
+    if (cursorList != null && cursorList.size() != 0) {
+      for (Cursor<?> cursor : cursorList) {
+        cursor.close();
+      }
+      cursorList.clear();
+    }
+  }
+
   public Configuration getConfiguration() {
     return configuration;
   }
@@ -238,6 +284,13 @@ public class DefaultSqlSession implements SqlSession {
     executor.clearLocalCache();
   }
 
+  private <T> void registerCursor(Cursor<T> cursor) {
+    if (cursorList == null) {
+      cursorList = new ArrayList<Cursor<?>>();
+    }
+    cursorList.add(cursor);
+  }
+
   private boolean isCommitOrRollbackRequired(boolean force) {
     return (!autoCommit && dirty) || force;
   }
@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Test;
+
+public class MethodSignatureTest {
+
+  interface Mapper {
+    void find(@Param("id") Integer id, @Param("param1") String name, RowBounds rowBounds, String other);
+
+    void findOne(String name);
+  }
+
+  @Test
+  public void shouldBuildParamMapFromPrecomputedSlots() throws Exception {
+    Method method = Mapper.class.getMethod("find", Integer.class, String.class, RowBounds.class, String.class);
+    MapperMethod.MethodSignature signature = new MapperMethod.MethodSignature(new Configuration(), method);
+    Object param = signature.convertArgsToSqlCommandParam(new Object[] { 1, "name", RowBounds.DEFAULT, "other" });
+
+    Map<String, Object> expected = new HashMap<String, Object>();
+    expected.put("id", 1);
+    expected.put("param1", "name");
+    expected.put("param2", "name");
+    expected.put("2", "other");
+    expected.put("param3", "other");
+    assertEquals(MapperMethod.ParamMap.class, param.getClass());
+    assertEquals(expected, param);
+  }
+
+  @Test(expected = BindingException.class)
+  public void shouldRejectUnknownParameterNames() throws Exception {
+    Method method = Mapper.class.getMethod("find", Integer.class, String.class, RowBounds.class, String.class);
+    MapperMethod.MethodSignature signature = new MapperMethod.MethodSignature(new Configuration(), method);
+    Map<?, ?> param = (Map<?, ?>) signature.convertArgsToSqlCommandParam(new Object[] { 1, "name", RowBounds.DEFAULT, "other" });
+    param.get("missing");
+  }
+
+  @Test
+  public void shouldPassSingleUnnamedArgumentThrough() throws Exception {
+    Method method = Mapper.class.getMethod("findOne", String.class);
+    MapperMethod.MethodSignature signature = new MapperMethod.MethodSignature(new Configuration(), method);
+    assertSame("name", signature.convertArgsToSqlCommandParam(new Object[] { "name" }));
+  }
+
+}
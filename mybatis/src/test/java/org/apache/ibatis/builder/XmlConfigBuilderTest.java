@@ -16,16 +16,23 @@
 package org.apache.ibatis.builder;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.TreeSet;
 
+import org.apache.ibatis.builder.xml.MapperSnapshot;
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.session.Configuration;
@@ -102,4 +109,92 @@ public class XmlConfigBuilderTest {
     assertTrue(typeHandler instanceof EnumOrderTypeHandler);
     assertArrayEquals(MyEnum.values(), ((EnumOrderTypeHandler) typeHandler).constants);
   }
+
+  @Test
+  public void shouldLoadFetchSizeSettings() {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+        + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+        + "<configuration>\n"
+        + "  <settings>\n"
+        + "    <setting name=\"defaultFetchSize\" value=\"100\"/>\n"
+        + "    <setting name=\"adaptiveFetchSizeEnabled\" value=\"true\"/>\n"
+        + "    <setting name=\"adaptiveFetchSizeLimit\" value=\"500\"/>\n"
+        + "  </settings>\n"
+        + "</configuration>\n";
+
+    XMLConfigBuilder builder = new XMLConfigBuilder(new StringReader(MAPPER_CONFIG));
+    Configuration config = builder.parse();
+
+    assertEquals(Integer.valueOf(100), config.getDefaultFetchSize());
+    assertTrue(config.isAdaptiveFetchSizeEnabled());
+    assertEquals(500, config.getAdaptiveFetchSizeLimit());
+  }
+
+  @Test
+  public void shouldLeaveFetchSizeUnsetByDefault() throws Exception {
+    String resource = "org/apache/ibatis/builder/MinimalMapperConfig.xml";
+    InputStream inputStream = Resources.getResourceAsStream(resource);
+    Configuration config = new XMLConfigBuilder(inputStream).parse();
+    assertNull(config.getDefaultFetchSize());
+    assertFalse(config.isAdaptiveFetchSizeEnabled());
+  }
+
+  @Test
+  public void shouldRegisterMappersInOrderWhenParsingInParallel() throws Exception {
+    String resource = "org/apache/ibatis/builder/MapperConfig.xml";
+    Configuration sequential = new XMLConfigBuilder(Resources.getResourceAsStream(resource)).parse();
+    String xml = readResource(resource).replace("<settings>", "<settings>\n    <setting name=\"mapperParseThreads\" value=\"4\"/>");
+    Configuration parallel = new XMLConfigBuilder(new StringReader(xml)).parse();
+    assertEquals(4, parallel.getMapperParseThreads());
+    assertEquals(new TreeSet<String>(sequential.getMappedStatementNames()), new TreeSet<String>(parallel.getMappedStatementNames()));
+    assertEquals(new TreeSet<String>(sequential.getResultMapNames()), new TreeSet<String>(parallel.getResultMapNames()));
+  }
+
+  @Test(expected = BuilderException.class)
+  public void shouldReportMissingMapperWhenParsingInParallel() throws Exception {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+        + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+        + "<configuration>\n"
+        + "  <settings>\n"
+        + "    <setting name=\"mapperParseThreads\" value=\"2\"/>\n"
+        + "  </settings>\n"
+        + "  <mappers>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/MissingMapper.xml\"/>\n"
+        + "  </mappers>\n"
+        + "</configuration>\n";
+    new XMLConfigBuilder(new StringReader(MAPPER_CONFIG)).parse();
+  }
+
+  @Test
+  public void shouldBuildSameConfigurationFromMapperSnapshot() throws Exception {
+    String resource = "org/apache/ibatis/builder/MapperConfig.xml";
+    File snapshot = File.createTempFile("mapper", ".snapshot");
+    try {
+      MapperSnapshot.main(new String[] { resource, snapshot.getAbsolutePath() });
+      Configuration sequential = new XMLConfigBuilder(Resources.getResourceAsStream(resource)).parse();
+      String xml = readResource(resource).replace("<settings>", "<settings>\n    <setting name=\"mapperSnapshotFile\" value=\"" + snapshot.getAbsolutePath() + "\"/>");
+      Configuration fromSnapshot = new XMLConfigBuilder(new StringReader(xml)).parse();
+      assertEquals(new TreeSet<String>(sequential.getMappedStatementNames()), new TreeSet<String>(fromSnapshot.getMappedStatementNames()));
+      assertEquals(new TreeSet<String>(sequential.getResultMapNames()), new TreeSet<String>(fromSnapshot.getResultMapNames()));
+      assertEquals(sequential.getMappedStatement("domain.blog.mappers.AuthorMapper.selectAllAuthors").getBoundSql(null).getSql(),
+          fromSnapshot.getMappedStatement("domain.blog.mappers.AuthorMapper.selectAllAuthors").getBoundSql(null).getSql());
+    } finally {
+      snapshot.delete();
+    }
+  }
+
+  private static String readResource(String resource) throws Exception {
+    Reader reader = Resources.getResourceAsReader(resource);
+    try {
+      StringBuilder xml = new StringBuilder();
+      char[] buffer = new char[4096];
+      for (int n; (n = reader.read(buffer)) > 0;) {
+        xml.append(buffer, 0, n);
+      }
+      return xml.toString();
+    } finally {
+      reader.close();
+    }
+  }
 }
@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.builder;
 
+import static org.junit.Assert.assertTrue;
+
 import java.io.InputStream;
 
 import org.apache.ibatis.builder.xml.XMLMapperBuilder;
@@ -33,6 +35,17 @@ public class XmlMapperBuilderTest {
     builder.parse();
   }
 
+  @Test
+  public void shouldLoadXMLMapperFileWithStreamingParser() throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setUseStreamingMapperParser(true);
+    String resource = "org/apache/ibatis/builder/AuthorMapper.xml";
+    InputStream inputStream = Resources.getResourceAsStream(resource);
+    XMLMapperBuilder builder = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
+    builder.parse();
+    assertTrue(configuration.hasStatement("domain.blog.mappers.AuthorMapper.selectAllAuthors"));
+  }
+
 //  @Test
 //  public void shouldNotLoadTheSameNamespaceFromTwoResourcesWithDifferentNames() throws Exception {
 //    Configuration configuration = new Configuration();
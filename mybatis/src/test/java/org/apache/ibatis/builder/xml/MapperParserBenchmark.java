@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+
+/**
+ * 比较useStreamingMapperParser和默认DocumentBuilder读取mapper xml的时间和堆内存峰值,不是单元测试
+ *
+ * java -cp target/classes:target/test-classes org.apache.ibatis.builder.xml.MapperParserBenchmark [dom|streaming|both] [轮数] [目录]
+ *
+ * 默认读取src/test/java下所有声明了mapper DTD并且两种方式都能解析的xml,每轮把所有文件各解析一次,
+ * 并像XMLMapperBuilder一样取出mapper下的各类元素;
+ * 堆内存峰值是各个堆内存池峰值的和,包含还没有回收的垃圾,同一个JVM里先跑的解析器会影响后跑的,比较峰值时应该分别用dom和streaming各跑一次;
+ * JVM支持com.sun.management.ThreadMXBean时同时报告每轮分配的内存
+ */
+public class MapperParserBenchmark {
+
+  private static final String MAPPER_DTD = "mybatis-3-mapper.dtd";
+
+  public static void main(String[] args) throws Exception {
+    String mode = args.length > 0 ? args[0] : "both";
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    File dir = new File(args.length > 2 ? args[2] : "src/test/java");
+    List<byte[]> mappers = new ArrayList<byte[]>();
+    collectMappers(dir, mappers);
+    System.out.println(mappers.size() + " mapper files, " + rounds + " rounds");
+    if (!"streaming".equals(mode)) {
+      run("dom", mappers, rounds, false);
+    }
+    if (!"dom".equals(mode)) {
+      run("streaming", mappers, rounds, true);
+    }
+  }
+
+  private static void run(String name, List<byte[]> mappers, int rounds, boolean streaming) {
+    //预热一轮,不计入结果
+    parseAll(mappers, streaming);
+    System.gc();
+    List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        heapPools.add(pool);
+      }
+    }
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      parseAll(mappers, streaming);
+    }
+    long elapsed = System.nanoTime() - start;
+    long allocated = allocatedBytes() - allocatedBefore;
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      peak += pool.getPeakUsage().getUsed();
+    }
+    StringBuilder report = new StringBuilder(name).append(": ");
+    report.append(elapsed / rounds / 1000000).append(" ms per round, peak heap ").append(peak / (1024 * 1024)).append(" MB");
+    if (allocatedBefore >= 0) {
+      report.append(", allocated ").append(allocated / rounds / (1024 * 1024)).append(" MB per round");
+    }
+    System.out.println(report);
+  }
+
+  /**
+   * @return 当前线程累计分配的字节数,JVM不支持时返回-1
+   */
+  private static long allocatedBytes() {
+    try {
+      Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+      Object threadBean = ManagementFactory.getThreadMXBean();
+      if (!type.isInstance(threadBean)) {
+        return -1;
+      }
+      Method method = type.getMethod("getThreadAllocatedBytes", long.class);
+      return (Long) method.invoke(threadBean, Thread.currentThread().getId());
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  private static void parseAll(List<byte[]> mappers, boolean streaming) {
+    for (byte[] mapper : mappers) {
+      InputStream inputStream = new ByteArrayInputStream(mapper);
+      XPathParser parser = streaming
+          ? new XPathParser(StreamingMapperReader.read(inputStream), true, null, new XMLMapperEntityResolver())
+          : new XPathParser(inputStream, true, null, new XMLMapperEntityResolver());
+      XNode context = parser.evalNode("/mapper");
+      context.evalNode("cache-ref");
+      context.evalNode("cache");
+      context.evalNodes("/mapper/parameterMap");
+      context.evalNodes("/mapper/resultMap");
+      context.evalNodes("/mapper/sql");
+      context.evalNodes("select|insert|update|delete");
+    }
+  }
+
+  private static void collectMappers(File dir, List<byte[]> mappers) throws IOException {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isDirectory()) {
+        collectMappers(file, mappers);
+      } else if (file.getName().endsWith(".xml")) {
+        byte[] content = read(file);
+        //故意写错的mapper(测试异常用的)两种解析器都不一定能读,跳过
+        if (new String(content, "UTF-8").contains(MAPPER_DTD) && parses(content)) {
+          mappers.add(content);
+        }
+      }
+    }
+  }
+
+  private static boolean parses(byte[] mapper) {
+    List<byte[]> single = new ArrayList<byte[]>();
+    single.add(mapper);
+    try {
+      parseAll(single, false);
+      parseAll(single, true);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static byte[] read(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+}
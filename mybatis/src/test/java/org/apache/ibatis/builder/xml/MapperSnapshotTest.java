@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class MapperSnapshotTest {
+
+  private static final String RESOURCE = "org/apache/ibatis/builder/AuthorMapper.xml";
+
+  @Test
+  public void shouldRebuildTheValidatedDocument() throws Exception {
+    byte[] source = read(RESOURCE);
+    MapperSnapshot snapshot = snapshotOf(source);
+    Document document = snapshot.getDocument(RESOURCE, source);
+    assertNotNull(document);
+
+    XNode expected = new XPathParser(new ByteArrayInputStream(source), true, null, new XMLMapperEntityResolver()).evalNode("/mapper");
+    XNode actual = new XPathParser(document, true, null, new XMLMapperEntityResolver()).evalNode("/mapper");
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void shouldIgnoreChangedOrUnknownMappers() throws Exception {
+    byte[] source = read(RESOURCE);
+    MapperSnapshot snapshot = snapshotOf(source);
+    byte[] changed = source.clone();
+    changed[changed.length - 2] = ' ';
+    assertNull(snapshot.getDocument(RESOURCE, changed));
+    assertNull(snapshot.getDocument("org/apache/ibatis/builder/BlogMapper.xml", source));
+  }
+
+  @Test
+  public void shouldNotLoadSomethingElse() {
+    assertNull(MapperSnapshot.load(RESOURCE));
+  }
+
+  private static MapperSnapshot snapshotOf(byte[] source) throws Exception {
+    Map<String, byte[]> sources = new LinkedHashMap<String, byte[]>();
+    sources.put(RESOURCE, source);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MapperSnapshot.write(sources, out);
+    return MapperSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+  }
+
+  private static byte[] read(String resource) throws Exception {
+    InputStream in = Resources.getResourceAsStream(resource);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int n; (n = in.read(buffer)) > 0;) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+}
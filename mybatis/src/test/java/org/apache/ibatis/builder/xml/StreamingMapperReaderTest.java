@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+public class StreamingMapperReaderTest {
+
+  @Test
+  public void shouldReadTheSameTreeAsDocumentBuilder() throws Exception {
+    String resource = "org/apache/ibatis/builder/BlogMapper.xml";
+    XNode expected = new XPathParser(Resources.getResourceAsStream(resource), true, null, new XMLMapperEntityResolver()).evalNode("/mapper");
+    InputStream inputStream = Resources.getResourceAsStream(resource);
+    XNode actual = new XPathParser(StreamingMapperReader.read(inputStream), true, null, new XMLMapperEntityResolver()).evalNode("/mapper");
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void shouldKeepCdataAndDropComments() throws Exception {
+    String xml = "<mapper namespace=\"x\"><!-- ignored --><select id=\"a\">select * &amp; <![CDATA[where a < 1]]></select></mapper>";
+    Document document = StreamingMapperReader.read(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    Node select = document.getDocumentElement().getFirstChild();
+    assertEquals("select", select.getNodeName());
+    assertNull(select.getPreviousSibling());
+    assertEquals("select * & ", select.getFirstChild().getNodeValue());
+    assertEquals(Node.CDATA_SECTION_NODE, select.getLastChild().getNodeType());
+    assertEquals("where a < 1", select.getLastChild().getNodeValue());
+  }
+
+}
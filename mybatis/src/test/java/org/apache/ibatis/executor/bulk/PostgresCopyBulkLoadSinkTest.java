@@ -0,0 +1,97 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.bulk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.ArrayTypeHandler;
+import org.apache.ibatis.type.BlobTypeHandler;
+import org.apache.ibatis.type.ClobTypeHandler;
+
+import org.junit.Test;
+
+public class PostgresCopyBulkLoadSinkTest {
+
+  @Test
+  public void shouldEncodeCsvValues() {
+    StringBuilder row = new StringBuilder();
+    Object[] values = { 1, null, "say \"hi\", bye", new BigDecimal("1E+3"), Date.valueOf("2014-03-01"), new byte[] { 0x0f, (byte) 0xa0 } };
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        row.append(',');
+      }
+      PostgresCopyBulkLoadSink.appendCsvValue(row, values[i]);
+    }
+    assertEquals("1,,\"say \"\"hi\"\", bye\",1000,\"2014-03-01\",\"\\x0fa0\"", row.toString());
+  }
+
+  @Test
+  public void shouldEncodeClobAndBlobContentInsteadOfStreams() {
+    Configuration configuration = new Configuration();
+    List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+    mappings.add(new ParameterMapping.Builder(configuration, "body", new ClobTypeHandler()).build());
+    mappings.add(new ParameterMapping.Builder(configuration, "data", new BlobTypeHandler()).build());
+    MappedStatement ms = new MappedStatement.Builder(configuration, "insertDocument",
+        new StaticSqlSource(configuration, "insert into document (body, data) values (?, ?)", mappings), SqlCommandType.INSERT).build();
+    Map<String, Object> document = new HashMap<String, Object>();
+    document.put("body", "long text");
+    document.put("data", new byte[] { 0x0f, (byte) 0xa0 });
+
+    BulkLoadContext context = new BulkLoadContext(configuration, null, ms, null);
+    Object[] values = context.encodeRow(context.newStatementHandler(document));
+    assertEquals("long text", values[0]);
+    assertArrayEquals(new byte[] { 0x0f, (byte) 0xa0 }, (byte[]) values[1]);
+    assertTrue(context.canEncodeRow(context.newStatementHandler(document)));
+  }
+
+  @Test
+  public void shouldNotEncodeArrays() {
+    Configuration configuration = new Configuration();
+    List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+    mappings.add(new ParameterMapping.Builder(configuration, "tags", new ArrayTypeHandler()).build());
+    MappedStatement ms = new MappedStatement.Builder(configuration, "insertTags",
+        new StaticSqlSource(configuration, "insert into post (tags) values (?)", mappings), SqlCommandType.INSERT).build();
+    Map<String, Object> post = new HashMap<String, Object>();
+    post.put("tags", Proxy.newProxyInstance(Array.class.getClassLoader(), new Class<?>[] { Array.class }, new InvocationHandler() {
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        return null;
+      }
+    }));
+
+    BulkLoadContext context = new BulkLoadContext(configuration, null, ms, null);
+    assertFalse(context.canEncodeRow(context.newStatementHandler(post)));
+  }
+
+}
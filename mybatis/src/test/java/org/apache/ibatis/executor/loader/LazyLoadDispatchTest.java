@@ -0,0 +1,118 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+import domain.blog.Author;
+
+public class LazyLoadDispatchTest {
+
+  @Test
+  public void shouldResolveGettersAndSettersToUppercasePropertyKeys() throws Exception {
+    LazyLoadDispatch dispatch = new LazyLoadDispatch(configuration(false));
+    LazyLoadDispatch.Target getter = dispatch.targetOf(Author.class.getMethod("getUsername"));
+    assertTrue(getter.triggersLoad());
+    assertFalse(getter.isLoadAll());
+    assertEquals("USERNAME", getter.getPropertyKey());
+    assertEquals("USERNAME", dispatch.targetOf(Author.class.getMethod("setUsername", String.class)).getPropertyKey());
+    assertSame(getter, dispatch.targetOf(Author.class.getMethod("getUsername")));
+  }
+
+  @Test
+  public void shouldLoadAllOnTriggerMethodsOrWhenAggressive() throws Exception {
+    LazyLoadDispatch lazy = new LazyLoadDispatch(configuration(false));
+    assertTrue(lazy.targetOf(Object.class.getMethod("toString")).isLoadAll());
+    assertFalse(lazy.targetOf(Object.class.getMethod("getClass")).isLoadAll());
+    LazyLoadDispatch aggressive = new LazyLoadDispatch(configuration(true));
+    assertTrue(aggressive.targetOf(Author.class.getMethod("getUsername")).isLoadAll());
+  }
+
+  @Test
+  public void shouldNeverLoadOnFinalize() throws Exception {
+    LazyLoadDispatch dispatch = new LazyLoadDispatch(configuration(true));
+    assertFalse(dispatch.targetOf(Object.class.getDeclaredMethod("finalize")).triggersLoad());
+  }
+
+  @Test
+  public void shouldTrackPendingLoaders() throws Exception {
+    ResultLoaderMap loader = new ResultLoaderMap();
+    assertFalse(loader.hasPendingLoaders());
+    loader.addLoader("id", null, null);
+    assertTrue(loader.hasPendingLoaders());
+    assertFalse(loader.load("bio"));
+    assertTrue(loader.hasPendingLoaders());
+  }
+
+  @Test
+  public void shouldKeepLoaderPendingUntilPropertyIsSet() throws Exception {
+    final Configuration configuration = configuration(false);
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ResultLoaderMap loader = new ResultLoaderMap();
+    final Author author = new Author();
+    loader.addLoader("username", configuration.newMetaObject(author), new ResultLoader(configuration, null, null, null, String.class, null, null) {
+      @Override
+      public Object loadResult() throws SQLException {
+        loading.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return "jim";
+      }
+    });
+
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        synchronized (loader) {
+          try {
+            loader.load("username");
+          } catch (SQLException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      }
+    };
+    thread.start();
+    assertTrue(loading.await(10, TimeUnit.SECONDS));
+    // the second thread must still enter the synchronized block and wait for the load
+    assertTrue(loader.hasPendingLoaders());
+    release.countDown();
+    thread.join(10000);
+    assertFalse(loader.hasPendingLoaders());
+    assertEquals("jim", author.getUsername());
+  }
+
+  private Configuration configuration(boolean aggressive) {
+    Configuration configuration = new Configuration();
+    configuration.setAggressiveLazyLoading(aggressive);
+    return configuration;
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class NestedQueryBatchTest {
+
+  private final Configuration configuration = new Configuration();
+
+  @Test
+  public void shouldMatchDecimalKeysToIntegerParameters() {
+    NestedQueryBatch batch = batch();
+    List<Object> results = Arrays.<Object>asList(row(new BigDecimal("1")), row(new BigDecimal("2.00")), row(new BigDecimal("1.0")));
+    Map<Object, List<Object>> grouped = batch.groupByKey(configuration, results, Arrays.<Object>asList(1, 2L));
+    assertEquals(2, grouped.get(NestedQueryBatch.normalizeKey(1)).size());
+    assertEquals(1, grouped.get(NestedQueryBatch.normalizeKey(2L)).size());
+  }
+
+  @Test
+  public void shouldMatchStringKeysToNumberParametersAndBack() {
+    NestedQueryBatch batch = batch();
+    Map<Object, List<Object>> grouped = batch.groupByKey(configuration, Arrays.<Object>asList(row("7")), Arrays.<Object>asList(7));
+    assertEquals(1, grouped.get(NestedQueryBatch.normalizeKey(7)).size());
+    grouped = batch.groupByKey(configuration, Arrays.<Object>asList(row(7)), Arrays.<Object>asList("7"));
+    assertEquals(1, grouped.get("7").size());
+  }
+
+  @Test(expected = ExecutorException.class)
+  public void shouldFailWhenNoRowMatchesAParameter() {
+    batch().groupByKey(configuration, Arrays.<Object>asList(row("a")), Arrays.<Object>asList(1));
+  }
+
+  @Test
+  public void shouldAcceptEmptyResults() {
+    assertEquals(0, batch().groupByKey(configuration, new ArrayList<Object>(), Arrays.<Object>asList(1)).size());
+  }
+
+  private NestedQueryBatch batch() {
+    MappedStatement nested = new MappedStatement.Builder(configuration, "selectPost", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+        .batchSelect("selectPosts").batchKeyProperty("blogId").build();
+    MappedStatement batch = new MappedStatement.Builder(configuration, "selectPosts", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT).build();
+    return new NestedQueryBatch(nested, batch);
+  }
+
+  private static Map<String, Object> row(Object blogId) {
+    Map<String, Object> row = new HashMap<String, Object>();
+    row.put("blogId", blogId);
+    return row;
+  }
+
+}
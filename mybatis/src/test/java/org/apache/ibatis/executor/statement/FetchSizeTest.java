@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.statement;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FetchSizeTest {
+
+  @Mock
+  private Executor executor;
+  @Mock
+  private Connection conn;
+  @Mock
+  private PreparedStatement stmt;
+
+  private Configuration configuration;
+
+  @Before
+  public void setUp() throws Exception {
+    configuration = new Configuration();
+    when(conn.prepareStatement(anyString())).thenReturn(stmt);
+  }
+
+  @Test
+  public void shouldPreferRowBoundsHintOverEverythingElse() throws Exception {
+    configuration.setDefaultFetchSize(100);
+    enableAdaptiveFetchSize(300);
+    prepare(mappedStatement(50), new RowBounds(RowBounds.NO_ROW_OFFSET, RowBounds.NO_ROW_LIMIT, 7));
+    verify(stmt).setFetchSize(7);
+  }
+
+  @Test
+  public void shouldPreferStatementFetchSizeOverAdaptiveAndDefault() throws Exception {
+    configuration.setDefaultFetchSize(100);
+    enableAdaptiveFetchSize(300);
+    prepare(mappedStatement(50), RowBounds.DEFAULT);
+    verify(stmt).setFetchSize(50);
+  }
+
+  @Test
+  public void shouldPreferAdaptiveFetchSizeOverDefault() throws Exception {
+    configuration.setDefaultFetchSize(100);
+    enableAdaptiveFetchSize(300);
+    prepare(mappedStatement(null), RowBounds.DEFAULT);
+    verify(stmt).setFetchSize(512);
+  }
+
+  @Test
+  public void shouldCapAdaptiveFetchSizeAtLimit() throws Exception {
+    enableAdaptiveFetchSize(5000);
+    configuration.setAdaptiveFetchSizeLimit(1000);
+    prepare(mappedStatement(null), RowBounds.DEFAULT);
+    verify(stmt).setFetchSize(1000);
+  }
+
+  @Test
+  public void shouldNotLowerFetchSizeBelowDefault() throws Exception {
+    configuration.setDefaultFetchSize(100);
+    enableAdaptiveFetchSize(20);
+    prepare(mappedStatement(null), RowBounds.DEFAULT);
+    verify(stmt).setFetchSize(100);
+  }
+
+  @Test
+  public void shouldIgnoreObservedRowsWhenAdaptiveIsDisabled() throws Exception {
+    configuration.setDefaultFetchSize(100);
+    configuration.getFetchSizeTracker().recordRowCount("select", 300);
+    prepare(mappedStatement(null), RowBounds.DEFAULT);
+    verify(stmt).setFetchSize(100);
+  }
+
+  @Test
+  public void shouldLeaveDriverDefaultWhenNothingIsConfigured() throws Exception {
+    enableAdaptiveFetchSize(0);
+    prepare(mappedStatement(null), RowBounds.DEFAULT);
+    verify(stmt, never()).setFetchSize(anyInt());
+  }
+
+  private void enableAdaptiveFetchSize(int observedRows) {
+    configuration.setAdaptiveFetchSizeEnabled(true);
+    configuration.getFetchSizeTracker().recordRowCount("select", observedRows);
+  }
+
+  private MappedStatement mappedStatement(Integer fetchSize) {
+    return new MappedStatement.Builder(configuration, "select", new StaticSqlSource(configuration, "select * from users"), SqlCommandType.SELECT)
+        .fetchSize(fetchSize).build();
+  }
+
+  private void prepare(MappedStatement ms, RowBounds rowBounds) throws Exception {
+    new PreparedStatementHandler(executor, ms, null, rowBounds, null, null).prepare(conn);
+  }
+
+}
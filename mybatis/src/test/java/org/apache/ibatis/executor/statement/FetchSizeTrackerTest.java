@@ -0,0 +1,68 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class FetchSizeTrackerTest {
+
+  @Test
+  public void shouldNotSuggestBeforeAnythingIsRecorded() {
+    assertNull(new FetchSizeTracker().suggestFetchSize("select", 1000));
+  }
+
+  @Test
+  public void shouldIgnoreSmallResults() {
+    FetchSizeTracker tracker = new FetchSizeTracker();
+    tracker.recordRowCount("select", 15);
+    assertNull(tracker.suggestFetchSize("select", 1000));
+  }
+
+  @Test
+  public void shouldRoundLargestObservedCountUpToPowerOfTwo() {
+    FetchSizeTracker tracker = new FetchSizeTracker();
+    tracker.recordRowCount("select", 300);
+    assertEquals(Integer.valueOf(512), tracker.suggestFetchSize("select", 1000));
+    tracker.recordRowCount("select", 20);
+    assertEquals(Integer.valueOf(512), tracker.suggestFetchSize("select", 1000));
+    tracker.recordRowCount("select", 600);
+    assertEquals(Integer.valueOf(1000), tracker.suggestFetchSize("select", 1000));
+    tracker.recordRowCount("select", 64);
+    assertEquals(Integer.valueOf(1000), tracker.suggestFetchSize("select", 1000));
+    assertNull(tracker.suggestFetchSize("other", 1000));
+  }
+
+  @Test
+  public void shouldNotExceedLimit() {
+    FetchSizeTracker tracker = new FetchSizeTracker();
+    tracker.recordRowCount("select", Integer.MAX_VALUE);
+    assertEquals(Integer.valueOf(1 << 30), tracker.suggestFetchSize("select", Integer.MAX_VALUE));
+    assertEquals(Integer.valueOf(100), tracker.suggestFetchSize("select", 100));
+  }
+
+  @Test
+  public void shouldForgetObservationsWhenCleared() {
+    FetchSizeTracker tracker = new FetchSizeTracker();
+    tracker.recordRowCount("select", 64);
+    assertEquals(Integer.valueOf(64), tracker.suggestFetchSize("select", 1000));
+    tracker.clear();
+    assertNull(tracker.suggestFetchSize("select", 1000));
+  }
+
+}
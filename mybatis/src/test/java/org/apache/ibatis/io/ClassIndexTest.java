@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import domain.blog.Author;
+import domain.blog.Blog;
+
+public class ClassIndexTest {
+
+  private static final String INDEX =
+      "# generated\n"
+      + "package domain.blog\n"
+      + "domain.blog.Author\n"
+      + "domain.blog.mappers.AuthorMapper org.apache.ibatis.annotations.CacheNamespace\n"
+      + "domain.blogs.Other\n";
+
+  @Test
+  public void shouldListIndexedClassesOfPackageAndSubPackages() throws Exception {
+    ClassIndex index = ClassIndex.read(new StringReader(INDEX));
+    assertTrue(index.covers("domain.blog"));
+    assertTrue(index.covers("domain.blog.mappers"));
+    assertFalse(index.covers("domain"));
+    assertFalse(index.covers("domain.blogs"));
+    assertEquals(Arrays.asList("domain.blog.Author", "domain.blog.mappers.AuthorMapper"), index.getClassNames("domain.blog"));
+    assertTrue(index.hasAnnotation("domain.blog.mappers.AuthorMapper", "org.apache.ibatis.annotations.CacheNamespace"));
+    assertFalse(index.hasAnnotation("domain.blog.Author", "org.apache.ibatis.annotations.CacheNamespace"));
+  }
+
+  @Test
+  public void shouldResolvePackageFromIndexInsteadOfScanning() throws Exception {
+    File root = File.createTempFile("class-index", "");
+    root.delete();
+    File file = new File(root, ClassIndex.INDEX_RESOURCE);
+    file.getParentFile().mkdirs();
+    Writer writer = new FileWriter(file);
+    try {
+      ClassIndex.write(writer, Collections.singleton("domain.blog"), Collections.<Class<?>>singleton(Author.class));
+    } finally {
+      writer.close();
+    }
+
+    ResolverUtil<Object> resolverUtil = new ResolverUtil<Object>();
+    resolverUtil.setClassLoader(new URLClassLoader(new URL[] { root.toURI().toURL() }, getClass().getClassLoader()));
+    resolverUtil.find(new ResolverUtil.IsA(Object.class), "domain.blog");
+    assertEquals(Collections.<Class<?>>singleton(Author.class), resolverUtil.getClasses());
+
+    ResolverUtil<Object> scanned = new ResolverUtil<Object>();
+    scanned.find(new ResolverUtil.IsA(Object.class), "domain.blog");
+    assertTrue(scanned.getClasses().contains(Blog.class));
+  }
+
+  @Test
+  public void shouldCacheScannedListingsOnlyWhileEnabled() throws Exception {
+    File root = File.createTempFile("class-listing", "");
+    root.delete();
+    File dir = new File(root, "listing/cache");
+    dir.mkdirs();
+    new File(dir, "A.class").createNewFile();
+    ClassLoader loader = new URLClassLoader(new URL[] { root.toURI().toURL() }, getClass().getClassLoader());
+
+    // VFS lists packages through the context class loader
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(loader);
+    try {
+      ResolverUtil.setListingCacheEnabled(true);
+      try {
+        assertEquals(Arrays.asList("listing/cache/A.class"), scan(loader));
+        new File(dir, "B.class").createNewFile();
+        assertEquals(Arrays.asList("listing/cache/A.class"), scan(loader));
+      } finally {
+        ResolverUtil.setListingCacheEnabled(false);
+      }
+      List<String> listed = scan(loader);
+      Collections.sort(listed);
+      assertEquals(Arrays.asList("listing/cache/A.class", "listing/cache/B.class"), listed);
+    } finally {
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  private List<String> scan(ClassLoader loader) {
+    final List<String> listed = new ArrayList<String>();
+    ResolverUtil<Object> resolverUtil = new ResolverUtil<Object>() {
+      @Override
+      protected void addIfMatching(Test test, String fqn) {
+        listed.add(fqn);
+      }
+    };
+    resolverUtil.setClassLoader(loader);
+    resolverUtil.find(new ResolverUtil.IsA(Object.class), "listing.cache");
+    return listed;
+  }
+
+}
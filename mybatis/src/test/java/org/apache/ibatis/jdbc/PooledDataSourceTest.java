@@ -18,12 +18,17 @@ package org.apache.ibatis.jdbc;
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.Test;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -85,4 +90,38 @@ public class PooledDataSourceTest extends BaseDataTest {
     Connection c = ds.getConnection();
     JDBCConnection realConnection = (JDBCConnection) PooledDataSource.unwrapConnection(c);
   }
+
+  @Test
+  public void shouldReusePreparedStatementsAcrossCheckouts() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      runScript(ds, JPETSTORE_DDL);
+      ds.setPoolMaximumIdleConnections(1);
+      ds.setPoolPreparedStatementCacheSize(2);
+      Connection c = ds.getConnection();
+      PreparedStatement first = c.prepareStatement("SELECT * FROM PRODUCT");
+      // the cached statement is still open, so the same sql gets a separate one
+      PreparedStatement concurrent = c.prepareStatement("SELECT * FROM PRODUCT");
+      assertNotSame(first, concurrent);
+      concurrent.close();
+      first.setMaxRows(1);
+      first.close();
+      assertTrue(first.isClosed());
+      c.close();
+
+      c = ds.getConnection();
+      PreparedStatement second = c.prepareStatement("SELECT * FROM PRODUCT");
+      assertSame(first, second);
+      assertFalse(second.isClosed());
+      assertEquals(0, second.getMaxRows());
+      second.close();
+      c.prepareStatement("SELECT * FROM CATEGORY").close();
+      c.prepareStatement("SELECT * FROM ITEM").close();
+      // least recently used statement was evicted
+      assertNotSame(first, c.prepareStatement("SELECT * FROM PRODUCT"));
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
 }
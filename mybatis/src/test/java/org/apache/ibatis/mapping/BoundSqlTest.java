@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.mapping;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Test;
+
+public class BoundSqlTest {
+
+  private final Configuration configuration = new Configuration();
+
+  @Test
+  public void shouldResolveParameterValuesOnce() {
+    CountingBean bean = new CountingBean();
+    BoundSql boundSql = new BoundSql(configuration, "select ?, ?", mappings("id", "name"), bean);
+    Object[] values = boundSql.getParameterValues(configuration);
+    assertArrayEquals(new Object[] { 1, "one" }, values);
+    assertSame(values, boundSql.getParameterValues(configuration));
+    assertEquals(1, bean.reads);
+  }
+
+  @Test
+  public void shouldPreferAdditionalParametersAndResolveAgainAfterTheyChange() {
+    BoundSql boundSql = new BoundSql(configuration, "select ?, ?", mappings("id", "name"), new CountingBean());
+    Object[] values = boundSql.getParameterValues(configuration);
+    boundSql.setAdditionalParameter("name", "two");
+    Object[] resolved = boundSql.getParameterValues(configuration);
+    assertNotSame(values, resolved);
+    assertArrayEquals(new Object[] { 1, "two" }, resolved);
+  }
+
+  @Test
+  public void shouldUseSimpleParameterForEveryMapping() {
+    BoundSql boundSql = new BoundSql(configuration, "select ?, ?", mappings("a", "b"), "value");
+    assertArrayEquals(new Object[] { "value", "value" }, boundSql.getParameterValues(configuration));
+  }
+
+  private List<ParameterMapping> mappings(String first, String second) {
+    List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+    mappings.add(new ParameterMapping.Builder(configuration, first, new IntegerTypeHandler()).build());
+    mappings.add(new ParameterMapping.Builder(configuration, second, new StringTypeHandler()).build());
+    return mappings;
+  }
+
+  public static class CountingBean {
+    private int reads;
+
+    public Integer getId() {
+      reads++;
+      return 1;
+    }
+
+    public String getName() {
+      return "one";
+    }
+  }
+
+}
@@ -16,8 +16,10 @@
 package org.apache.ibatis.parsing;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.InputStream;
+import java.util.List;
 
 import org.apache.ibatis.io.Resources;
 import org.junit.Test;
@@ -43,4 +45,21 @@ public class XPathParserTest {
     assertEquals("employee[${id_var}]_height", node.getValueBasedIdentifier());
   }
 
+  @Test
+  public void shouldSelectChildElementsByNameWithoutXPath() throws Exception {
+    InputStream inputStream = Resources.getResourceAsStream("resources/nodelet_test.xml");
+    XPathParser parser = new XPathParser(inputStream, false, null, null);
+    XNode employee = parser.evalNode("/employee");
+    assertEquals("year", employee.evalNode("birth_date/year").getName());
+    assertEquals("1970", employee.evalNode("/employee/birth_date/year").getStringBody());
+    assertNull(employee.evalNode("salary"));
+
+    List<XNode> nodes = employee.evalNodes("weight|first_name|height");
+    assertEquals(3, nodes.size());
+    assertEquals("first_name", nodes.get(0).getName());
+    assertEquals("height", nodes.get(1).getName());
+    assertEquals("weight", nodes.get(2).getName());
+    assertEquals(3, parser.evalNodes("/employee/birth_date/*").size());
+  }
+
 }
@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import domain.blog.Author;
+import domain.blog.Blog;
+import domain.blog.Post;
+
+public class ReflectorPreloaderTest {
+
+  @Test
+  public void shouldPreloadPropertyTypesTransitively() throws Exception {
+    int preloaded = ReflectorPreloader.preload(Arrays.<Class<?>>asList(Blog.class), 4);
+    assertTrue(preloaded >= 3);
+    StringWriter snapshot = new StringWriter();
+    ReflectorPreloader.writeSnapshot(snapshot);
+    List<String> names = Arrays.asList(snapshot.toString().split("\n"));
+    assertTrue(names.contains(Blog.class.getName()));
+    assertTrue(names.contains(Author.class.getName()));
+  }
+
+  @Test
+  public void shouldSkipMissingClassesWhenReadingSnapshot() throws Exception {
+    String snapshot = "# reflector snapshot\n" + Post.class.getName() + "\nno.such.Type\n\n";
+    List<Class<?>> types = ReflectorPreloader.readSnapshot(new StringReader(snapshot), getClass().getClassLoader());
+    assertEquals(Arrays.<Class<?>>asList(Post.class), types);
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker.cglib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.junit.Test;
+
+import domain.misc.RichType;
+
+public class FastClassInvokerFactoryTest {
+
+  private final FastClassInvokerFactory factory = new FastClassInvokerFactory();
+
+  @Test
+  public void shouldInvokePublicAccessorsThroughFastClass() throws Exception {
+    Invoker setter = factory.newMethodInvoker(RichType.class, RichType.class.getMethod("setRichProperty", String.class));
+    Invoker getter = factory.newMethodInvoker(RichType.class, RichType.class.getMethod("getRichProperty"));
+    assertTrue(setter instanceof FastMethodInvoker);
+    assertTrue(getter instanceof FastMethodInvoker);
+    assertEquals(String.class, setter.getType());
+    assertEquals(String.class, getter.getType());
+
+    RichType rich = new RichType();
+    setter.invoke(rich, new Object[] { "fast" });
+    assertEquals("fast", getter.invoke(rich, new Object[0]));
+  }
+
+  @Test
+  public void shouldFallBackToReflectionForNonPublicClasses() throws Exception {
+    Method method = Hidden.class.getMethod("getValue");
+    method.setAccessible(true); // as Reflector does
+    Invoker getter = factory.newMethodInvoker(Hidden.class, method);
+    assertSame(MethodInvoker.class, getter.getClass());
+    assertEquals("hidden", getter.invoke(new Hidden(), new Object[0]));
+  }
+
+  static class Hidden {
+    public String getValue() {
+      return "hidden";
+    }
+  }
+
+}
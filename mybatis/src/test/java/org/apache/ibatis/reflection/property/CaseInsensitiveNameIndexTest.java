@@ -0,0 +1,61 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.property;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CaseInsensitiveNameIndexTest {
+
+  private final CaseInsensitiveNameIndex index = new CaseInsensitiveNameIndex(Arrays.asList("id", "firstName", "last_name", "straße"));
+
+  @Test
+  public void shouldFindNamesIgnoringCase() {
+    assertEquals("firstName", index.find("FIRSTNAME"));
+    assertEquals("firstName", index.find("firstname"));
+    assertEquals("last_name", index.find("LAST_NAME"));
+    assertNull(index.find("first_name"));
+    assertNull(index.find("firstNam"));
+    assertNull(index.find("firstNames"));
+  }
+
+  @Test
+  public void shouldIgnoreUnderscoresInTheLookupName() {
+    assertEquals("firstName", index.find("FIRST_NAME", true));
+    assertEquals("firstName", index.find("_first__name_", true));
+    // underscores of the indexed names are kept, like name.replace("_", "") before the lookup
+    assertNull(index.find("LAST_NAME", true));
+  }
+
+  @Test
+  public void shouldMatchNonAsciiNamesLikeToUpperCase() {
+    assertEquals("straße", index.find("STRASSE"));
+    assertEquals("straße", index.find("Straße"));
+  }
+
+  @Test
+  public void shouldTellWhetherANameIsIndexed() {
+    assertTrue(index.contains("ID"));
+    assertFalse(index.contains("IDX"));
+  }
+
+}
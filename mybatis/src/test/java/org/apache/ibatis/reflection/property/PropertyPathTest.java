@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2009-2012 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.property;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+import domain.misc.RichType;
+
+public class PropertyPathTest {
+
+  @Test
+  public void shouldCompileParameterPathOncePerMapping() {
+    // paths are held by their ParameterMapping, not interned, so foreach names like __frch_item_0 are not pinned
+    assertNotSame(PropertyPath.compile("richType.richProperty"), PropertyPath.compile("richType.richProperty"));
+    ParameterMapping mapping = new ParameterMapping.Builder(new Configuration(), "richType.richProperty", Object.class).build();
+    assertSame(mapping.getPropertyPath(), mapping.getPropertyPath());
+    assertEquals("richType.richProperty", mapping.getPropertyPath().getFullName());
+  }
+
+  @Test
+  public void shouldGetValuesLikeMetaObject() {
+    RichType rich = new RichType();
+    MetaObject meta = SystemMetaObject.forObject(rich);
+    meta.setValue("richField", "field");
+    meta.setValue("richType.richProperty", "nested");
+    meta.setValue("richMap.key", "mapped");
+    meta.setValue("richList[0]", "listed");
+    for (String name : new String[] { "richField", "richType.richProperty", "richMap.key", "richList[0]", "richType.richType" }) {
+      assertEquals(name, meta.getValue(name), PropertyPath.compile(name).getValue(meta));
+    }
+  }
+
+  @Test
+  public void shouldReturnNullForNullIntermediateValue() {
+    MetaObject meta = SystemMetaObject.forObject(new RichType());
+    assertNull(PropertyPath.compile("richType.richProperty").getValue(meta));
+  }
+
+  @Test
+  public void shouldResolveInvokersPerType() {
+    PropertyPath path = PropertyPath.compile("richProperty");
+    RichType rich = new RichType();
+    Map<String, Object> map = new HashMap<String, Object>();
+    path.setValue(SystemMetaObject.forObject(rich), "bean");
+    path.setValue(SystemMetaObject.forObject(map), "map");
+    assertEquals("bean", rich.getRichProperty());
+    assertEquals("map", map.get("richProperty"));
+    assertEquals("bean", path.getValue(SystemMetaObject.forObject(rich)));
+    assertEquals("map", path.getValue(SystemMetaObject.forObject(map)));
+  }
+
+  @Test
+  public void shouldInstantiateIntermediateValuesOnSet() {
+    RichType rich = new RichType();
+    PropertyPath.compile("richType.richProperty").setValue(SystemMetaObject.forObject(rich), "created");
+    assertEquals("created", rich.getRichType().getRichProperty());
+  }
+
+}
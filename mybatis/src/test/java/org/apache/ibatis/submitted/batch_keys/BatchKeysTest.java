@@ -26,10 +26,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Assert;
 
+import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.jdbc.ScriptRunner;
 import org.apache.ibatis.session.ExecutorType;
@@ -133,4 +135,157 @@ public class BatchKeysTest {
     Assert.assertTrue(users.size() == 2);
   }
 
+  @Test
+  public void testInterleavedInsertsAreGrouped() throws Exception {
+    sqlSessionFactory.getConfiguration().setBatchGroupStatements(true);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      User user1 = new User(null, "Pocoyo");
+      sqlSession.insert("insertIdentity", user1);
+      sqlSession.insert("insert", new User(null, "Elly"));
+      User user2 = new User(null, "Valentina");
+      sqlSession.insert("insertIdentity", user2);
+      sqlSession.insert("insert", new User(null, "Pato"));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      assertEquals(2, results.get(1).getParameterObjects().size());
+      assertEquals(Integer.valueOf(0), user1.getId());
+      assertEquals(Integer.valueOf(1), user2.getId());
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void testBatchIsFlushedWhenFull() throws Exception {
+    sqlSessionFactory.getConfiguration().setBatchFlushSize(2);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      User user1 = new User(null, "Pocoyo");
+      sqlSession.insert("insertIdentity", user1);
+      User user2 = new User(null, "Valentina");
+      sqlSession.insert("insertIdentity", user2);
+      // the first two rows were executed already
+      assertEquals(Integer.valueOf(0), user1.getId());
+      User user3 = new User(null, "Elly");
+      sqlSession.insert("insertIdentity", user3);
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals(2, results.get(0).getUpdateCounts().length);
+      assertEquals(1, results.get(1).getUpdateCounts().length);
+      assertEquals(Integer.valueOf(2), user3.getId());
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void testInsertsAreRewrittenToMultiRowValues() throws Exception {
+    sqlSessionFactory.getConfiguration().setBatchRewriteInserts(true);
+    sqlSessionFactory.getConfiguration().setBatchRewriteMaxParameters(2);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      User[] users = new User[5];
+      for (int i = 0; i < users.length; i++) {
+        users[i] = new User(null, "User" + i);
+        sqlSession.insert("insertIdentity", users[i]);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      // two executions of the two-row statement and the remaining row on its own
+      assertEquals(2, results.size());
+      assertEquals(4, results.get(0).getParameterObjects().size());
+      assertEquals(4, results.get(0).getUpdateCounts().length);
+      assertEquals(1, results.get(1).getParameterObjects().size());
+      for (int i = 0; i < users.length; i++) {
+        assertEquals(Integer.valueOf(i), users[i].getId());
+      }
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+
+    sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<User> users = sqlSession.selectList("selectIdentity");
+      assertEquals(5, users.size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void testRewrittenInsertsKeepValuesOfReusedParameterObject() throws Exception {
+    sqlSessionFactory.getConfiguration().setBatchRewriteInserts(true);
+    sqlSessionFactory.getConfiguration().setBatchRewriteMaxParameters(4);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      User user = new User();
+      for (int i = 0; i < 3; i++) {
+        user.setName("User" + i);
+        sqlSession.insert("insertIdentity", user);
+      }
+      sqlSession.flushStatements();
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+
+    sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<User> users = sqlSession.selectList("selectIdentity");
+      assertEquals(3, users.size());
+      for (int i = 0; i < users.size(); i++) {
+        assertEquals("User" + i, users.get(i).getName());
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void testBulkLoadFallsBackToBatchedInserts() throws Exception {
+    sqlSessionFactory.getConfiguration().setBulkLoadBatchSize(2);
+    List<User> users = new ArrayList<User>();
+    for (int i = 0; i < 5; i++) {
+      users.add(new User(i, "User" + i));
+    }
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      assertEquals(5, sqlSession.bulkLoad("insertIdentity", users));
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+
+    sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<User> loaded = sqlSession.selectList("selectIdentity");
+      assertEquals(5, loaded.size());
+      assertEquals("User4", loaded.get(4).getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void testKeysAreAssignedToEachElementOfAListParameter() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<User> users = new ArrayList<User>();
+      for (int i = 0; i < 3; i++) {
+        users.add(new User(null, "User" + i));
+      }
+      sqlSession.insert("insertIdentityList", users);
+      for (int i = 0; i < users.size(); i++) {
+        assertEquals(Integer.valueOf(i), users.get(i).getId());
+      }
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
 }
@@ -0,0 +1,141 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cursor_nested;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.Iterator;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CursorNestedTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // create a SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cursor_nested/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cursor_nested/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldIterateOverCompletedParents() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Cursor<Person> persons = mapper.getPersons();
+      Assert.assertFalse(persons.isOpen());
+      Assert.assertEquals(-1, persons.getCurrentIndex());
+
+      Iterator<Person> iterator = persons.iterator();
+      Assert.assertTrue(iterator.hasNext());
+      Person grandma = iterator.next();
+      Assert.assertTrue(persons.isOpen());
+      Assert.assertEquals(0, persons.getCurrentIndex());
+      Assert.assertEquals("grandma", grandma.getName());
+      Assert.assertEquals(2, grandma.getItems().size());
+      Assert.assertTrue(grandma.owns("book"));
+      Assert.assertTrue(grandma.owns("tv"));
+
+      Person sister = iterator.next();
+      Assert.assertEquals("sister", sister.getName());
+      Assert.assertEquals(2, sister.getItems().size());
+      Assert.assertTrue(sister.owns("shoes"));
+      Assert.assertTrue(sister.owns("phone"));
+
+      Person brother = iterator.next();
+      Assert.assertEquals("brother", brother.getName());
+      Assert.assertEquals(1, brother.getItems().size());
+      Assert.assertEquals(2, persons.getCurrentIndex());
+
+      Assert.assertFalse(iterator.hasNext());
+      Assert.assertTrue(persons.isConsumed());
+      Assert.assertFalse(persons.isOpen());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldApplyRowBoundsToSimpleCursor() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Cursor<Item> items = mapper.getItems(new RowBounds(1, 3));
+      int count = 0;
+      Integer firstId = null;
+      for (Item item : items) {
+        if (firstId == null) {
+          firstId = item.getId();
+        }
+        count++;
+      }
+      Assert.assertEquals(3, count);
+      Assert.assertEquals(Integer.valueOf(2), firstId);
+      Assert.assertTrue(items.isConsumed());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldStopIteratingAfterClose() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Cursor<Item> items = mapper.getItems();
+      Iterator<Item> iterator = items.iterator();
+      Assert.assertEquals(Integer.valueOf(1), iterator.next().getId());
+      items.close();
+      Assert.assertFalse(items.isOpen());
+      Assert.assertFalse(iterator.hasNext());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test(expected = PersistenceException.class)
+  public void shouldRejectUnorderedNestedResultMap() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.selectCursor("org.apache.ibatis.submitted.cursor_nested.Mapper.getPersonsUnordered");
+    } finally {
+      sqlSession.close();
+    }
+  }
+}
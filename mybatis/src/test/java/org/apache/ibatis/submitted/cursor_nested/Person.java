@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cursor_nested;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class Person {
+  private Integer id;
+  private String name;
+  private List<Item> items=new ArrayList<Item>(); 
+
+  public Integer getId() {
+    return id;
+  }
+
+  public void setId(Integer id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public Collection<Item> getItems() {
+    return items;
+  }
+  
+  public boolean owns(String name) {
+    for (Item item : getItems()) {
+      if (item.getName().equals(name))
+        return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,39 @@
+--
+--    Copyright 2009-2014 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table post if exists;
+drop table author if exists;
+
+create table author (
+  id int,
+  name varchar(20)
+);
+
+create table post (
+  id int,
+  author_id int,
+  title varchar(20)
+);
+
+insert into author (id, name) values (1, 'author1');
+insert into author (id, name) values (2, 'author2');
+insert into author (id, name) values (3, 'author3');
+
+insert into post (id, author_id, title) values (1, 1, 'post1');
+insert into post (id, author_id, title) values (2, 2, 'post2');
+insert into post (id, author_id, title) values (3, 1, 'post3');
+insert into post (id, author_id, title) values (4, 3, 'post4');
+insert into post (id, author_id, title) values (5, 2, 'post5');
@@ -0,0 +1,231 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_select_batch;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class NestedSelectBatchTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // create a SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/nested_select_batch/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/nested_select_batch/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldLoadAssociationsInBatches() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      StatementCounter.reset();
+      List<Post> posts = mapper.getPosts();
+      // one statement for the posts, two batches (size 2) for the three distinct authors
+      Assert.assertEquals(3, StatementCounter.getCount());
+      Assert.assertEquals(5, posts.size());
+      for (Post post : posts) {
+        Assert.assertNotNull(post.getAuthor());
+        Assert.assertEquals(post.getAuthorId(), post.getAuthor().getId());
+      }
+      Assert.assertSame(posts.get(0).getAuthor(), posts.get(2).getAuthor());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldLoadCollectionsInBatches() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      StatementCounter.reset();
+      List<Author> authors = mapper.getAuthors();
+      Assert.assertEquals(3, StatementCounter.getCount());
+      Assert.assertEquals(3, authors.size());
+      Assert.assertEquals(2, authors.get(0).getPosts().size());
+      Assert.assertEquals(2, authors.get(1).getPosts().size());
+      Assert.assertEquals(1, authors.get(2).getPosts().size());
+      Assert.assertEquals("post4", authors.get(2).getPosts().get(0).getTitle());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldLoadLazySiblingsTogether() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      StatementCounter.reset();
+      List<Post> posts = mapper.getPostsLazily();
+      Assert.assertEquals(1, StatementCounter.getCount());
+      // touching the first post loads the siblings of two distinct authors (batch size 2)
+      Assert.assertEquals("author1", posts.get(0).getAuthor().getName());
+      Assert.assertEquals(2, StatementCounter.getCount());
+      Assert.assertEquals("author2", posts.get(1).getAuthor().getName());
+      Assert.assertEquals("author1", posts.get(2).getAuthor().getName());
+      Assert.assertEquals("author2", posts.get(4).getAuthor().getName());
+      Assert.assertEquals(2, StatementCounter.getCount());
+      for (Post post : posts) {
+        Assert.assertEquals(post.getAuthorId(), post.getAuthor().getId());
+      }
+      Assert.assertEquals(3, StatementCounter.getCount());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldLoadLazilyThroughSessionPoolAfterClose() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setLazyLoadPoolMaximumSessions(1);
+    try {
+      List<Post> posts;
+      SqlSession sqlSession = sqlSessionFactory.openSession();
+      try {
+        posts = sqlSession.getMapper(Mapper.class).getPostsLazily();
+      } finally {
+        sqlSession.close();
+      }
+      StatementCounter.reset();
+      for (Post post : posts) {
+        Assert.assertEquals(post.getAuthorId(), post.getAuthor().getId());
+      }
+      // one batch for authors 1 and 2, one for author 3
+      Assert.assertEquals(2, StatementCounter.getCount());
+    } finally {
+      configuration.close();
+      configuration.setLazyLoadPoolMaximumSessions(0);
+    }
+  }
+
+  @Test
+  public void shouldClosePooledSessionsWhenConfigurationIsClosed() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    Environment environment = configuration.getEnvironment();
+    CountingTransactionFactory transactionFactory = new CountingTransactionFactory(environment.getTransactionFactory());
+    configuration.setEnvironment(new Environment(environment.getId(), transactionFactory, environment.getDataSource()));
+    int idleTimeout = configuration.getLazyLoadPoolIdleTimeout();
+    configuration.setLazyLoadPoolIdleTimeout(60000);
+    configuration.setLazyLoadPoolMaximumSessions(1);
+    try {
+      List<Post> posts;
+      SqlSession sqlSession = sqlSessionFactory.openSession();
+      try {
+        posts = sqlSession.getMapper(Mapper.class).getPostsLazily();
+      } finally {
+        sqlSession.close();
+      }
+      Assert.assertEquals("author1", posts.get(0).getAuthor().getName());
+      // the pooled session stays open while idle
+      Assert.assertEquals(2, transactionFactory.opened.get());
+      Assert.assertEquals(1, transactionFactory.closed.get());
+      configuration.close();
+      Assert.assertEquals(2, transactionFactory.closed.get());
+      try {
+        // post4 is the only post of author3, so it was not part of the first batch
+        posts.get(3).getAuthor();
+        Assert.fail("the closed pool must not open new sessions");
+      } catch (RuntimeException e) {
+        // expected
+      }
+      Assert.assertEquals(2, transactionFactory.opened.get());
+    } finally {
+      configuration.close();
+      configuration.setLazyLoadPoolMaximumSessions(0);
+      configuration.setLazyLoadPoolIdleTimeout(idleTimeout);
+      configuration.setEnvironment(environment);
+    }
+  }
+
+  private static class CountingTransactionFactory implements TransactionFactory {
+    private final TransactionFactory delegate;
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    CountingTransactionFactory(TransactionFactory delegate) {
+      this.delegate = delegate;
+    }
+
+    public void setProperties(Properties props) {
+      delegate.setProperties(props);
+    }
+
+    public Transaction newTransaction(Connection conn) {
+      return counting(delegate.newTransaction(conn));
+    }
+
+    public Transaction newTransaction(DataSource dataSource, TransactionIsolationLevel level, boolean autoCommit) {
+      return counting(delegate.newTransaction(dataSource, level, autoCommit));
+    }
+
+    private Transaction counting(final Transaction transaction) {
+      opened.incrementAndGet();
+      return new Transaction() {
+        public Connection getConnection() throws SQLException {
+          return transaction.getConnection();
+        }
+
+        public void commit() throws SQLException {
+          transaction.commit();
+        }
+
+        public void rollback() throws SQLException {
+          transaction.rollback();
+        }
+
+        public void close() throws SQLException {
+          closed.incrementAndGet();
+          transaction.close();
+        }
+      };
+    }
+  }
+}
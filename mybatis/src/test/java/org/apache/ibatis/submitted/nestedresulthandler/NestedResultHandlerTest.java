@@ -17,6 +17,7 @@ package org.apache.ibatis.submitted.nestedresulthandler;
 
 import java.io.Reader;
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.ibatis.exceptions.PersistenceException;
@@ -99,6 +100,48 @@ public class NestedResultHandlerTest {
     }
   }
 
+  @Test
+  public void testGetPersonWithHandlerReceivesCompletedParents() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      final List<Person> persons = new ArrayList<Person>();
+      sqlSession.select("getPersons", new ResultHandler() {
+        public void handleResult(ResultContext context) {
+          Person person = (Person) context.getResultObject();
+          // each parent is handed over only once all of its rows were read
+          if ("grandma".equals(person.getName()) || "sister".equals(person.getName())) {
+            Assert.assertEquals(2, person.getItems().size());
+          } else {
+            Assert.assertEquals(1, person.getItems().size());
+          }
+          persons.add(person);
+        }
+      });
+      Assert.assertEquals(3, persons.size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void testGetPersonWithHandlerStoppedEarly() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      final List<Person> persons = new ArrayList<Person>();
+      sqlSession.select("getPersons", new ResultHandler() {
+        public void handleResult(ResultContext context) {
+          persons.add((Person) context.getResultObject());
+          context.stop();
+        }
+      });
+      Assert.assertEquals(1, persons.size());
+      Assert.assertEquals("grandma", persons.get(0).getName());
+      Assert.assertEquals(2, persons.get(0).getItems().size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
   @Test(expected=PersistenceException.class)
   public void testUnorderedGetPersonWithHandler() {
     SqlSession sqlSession = sqlSessionFactory.openSession();
@@ -150,4 +193,21 @@ public class NestedResultHandlerTest {
     }
   }
 
+  @Test
+  public void testOrderedRowsWithoutIdsAreNotMerged() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      // all id columns are null, so no row can be recognized as belonging to the previous parent
+      List<Person> persons = sqlSession.selectList("getPersonsWithoutIds");
+      Assert.assertEquals(5, persons.size());
+      for (Person person : persons) {
+        Assert.assertEquals(1, person.getItems().size());
+      }
+      Assert.assertEquals("grandma", persons.get(0).getName());
+      Assert.assertEquals("grandma", persons.get(1).getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
 }
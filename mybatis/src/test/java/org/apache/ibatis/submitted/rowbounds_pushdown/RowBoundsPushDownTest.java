@@ -0,0 +1,127 @@
+/*
+ *    Copyright 2009-2014 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.rowbounds_pushdown;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.List;
+
+import org.apache.ibatis.executor.pagination.LimitOffsetDialect;
+import org.apache.ibatis.executor.pagination.OffsetFetchDialect;
+import org.apache.ibatis.executor.pagination.PaginationDialectRegistry;
+import org.apache.ibatis.executor.pagination.RowNumDialect;
+import org.apache.ibatis.executor.pagination.SqlServerDialect;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.KeysetRowBounds;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RowBoundsPushDownTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // create a SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/rowbounds_pushdown/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/rowbounds_pushdown/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldResolveDialectFromDatabaseId() {
+    assertEquals("hsqldb", sqlSessionFactory.getConfiguration().getDatabaseId());
+    assertEquals(LimitOffsetDialect.class, sqlSessionFactory.getConfiguration().getPaginationDialect().getClass());
+  }
+
+  @Test
+  public void shouldPushOffsetAndLimitIntoSql() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsers(new RowBounds(2, 2));
+      assertEquals("select id, name from users order by id LIMIT 2 OFFSET 2", SqlRecorder.getLastSql());
+      assertEquals(2, users.size());
+      assertEquals(Integer.valueOf(3), users.get(0).getId());
+      assertEquals(Integer.valueOf(4), users.get(1).getId());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldPageWithKeyset() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> firstPage = mapper.getUsersAbove(1, new KeysetRowBounds("id", null, 2));
+      assertEquals("select * from ( select id, name from users where id > ? ) ks_ order by ks_.id LIMIT 2", SqlRecorder.getLastSql());
+      assertEquals(2, firstPage.size());
+      assertEquals(Integer.valueOf(2), firstPage.get(0).getId());
+      assertEquals(Integer.valueOf(3), firstPage.get(1).getId());
+
+      List<User> secondPage = mapper.getUsersAbove(1, new KeysetRowBounds("id", firstPage.get(1).getId(), 2));
+      assertEquals("select * from ( select id, name from users where id > ? ) ks_ where ks_.id > ? order by ks_.id LIMIT 2", SqlRecorder.getLastSql());
+      assertEquals(2, secondPage.size());
+      assertEquals(Integer.valueOf(4), secondPage.get(0).getId());
+      assertEquals(Integer.valueOf(5), secondPage.get(1).getId());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectKeysetColumnThatIsNotAPlainName() {
+    new KeysetRowBounds("id; drop table users", null, 10);
+  }
+
+  @Test
+  public void shouldRenderDialects() {
+    assertEquals("select 1 LIMIT 10 OFFSET 20", new LimitOffsetDialect().getPagedSql("select 1", 20, 10));
+    assertEquals("select 1 LIMIT 10 OFFSET 20", new LimitOffsetDialect().getPagedSql("select 1 ;\n", 20, 10));
+    assertEquals("select 1 OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", new OffsetFetchDialect().getPagedSql("select 1", 20, 10));
+    assertEquals("select * from ( select pg_.*, rownum pg_rn_ from ( select 1 ) pg_ where rownum <= 30 ) where pg_rn_ > 20",
+        new RowNumDialect().getPagedSql("select 1", 20, 10));
+  }
+
+  @Test
+  public void shouldAddOrderByForSqlServerWhenMissing() {
+    SqlServerDialect dialect = new SqlServerDialect();
+    assertEquals("select a from t ORDER BY (SELECT NULL) OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", dialect.getPagedSql("select a from t ", 20, 10));
+    assertEquals("select a from t order by a OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", dialect.getPagedSql("select a from t order by a", 20, 10));
+    // ORDER BY inside a subquery, a window function or a literal does not count
+    assertEquals("select row_number() over (order by a) from (select a from t order by a) x where b = 'order by' ORDER BY (SELECT NULL) OFFSET 0 ROWS FETCH NEXT 10 ROWS ONLY",
+        dialect.getPagedSql("select row_number() over (order by a) from (select a from t order by a) x where b = 'order by'", 0, 10));
+    assertEquals(SqlServerDialect.class, new PaginationDialectRegistry().getDialect("sqlserver").getClass());
+  }
+}
@@ -18,6 +18,7 @@ package org.apache.ibatis.submitted.sptests;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.Reader;
 import java.sql.Array;
@@ -31,6 +32,7 @@ import java.util.Map;
 
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
@@ -375,6 +377,32 @@ public class SPTest {
     }
   }
 
+  /*
+   * This test shows that independent result sets mapped on worker threads
+   * come back in the same order as the sequential mapping
+   * 
+   * @throws SQLException
+   */
+  @Test
+  public void testGetNamesAndItemsMappedInParallel() throws SQLException {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setParallelResultSetMappingEnabled(true);
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      SPMapper spMapper = sqlSession.getMapper(SPMapper.class);
+
+      List<List<?>> results = spMapper.getNamesAndItems();
+      assertEquals(2, results.size());
+      assertEquals(4, results.get(0).size());
+      assertEquals(3, results.get(1).size());
+      assertTrue(results.get(0).get(0) instanceof Name);
+      assertTrue(results.get(1).get(0) instanceof Item);
+    } finally {
+      sqlSession.close();
+      configuration.setParallelResultSetMappingEnabled(false);
+    }
+  }
+
   /*
    * This test shows how to use input and output parameters in a stored
    * procedure. This procedure does not return a result set.